@@ -8,8 +8,13 @@ import org.springframework.stereotype.Component;
 public class Config {
     private String userAgent;
     private String referrer;
+    private int timeout = 30_000;
+    private int maxBodySize = 5 * 1024 * 1024;
 
     private int delay;
+    private int minDelay = 100;
+    private int maxDelay = 60_000;
+    private int maxConnectionsPerHost = 4;
 
     public String getUserAgent() {
         return userAgent;
@@ -27,6 +32,22 @@ public class Config {
         this.referrer = referrer;
     }
 
+    public int getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
+    public int getMaxBodySize() {
+        return maxBodySize;
+    }
+
+    public void setMaxBodySize(int maxBodySize) {
+        this.maxBodySize = maxBodySize;
+    }
+
     public int getDelay() {  // Add this getter
         return delay;
     }
@@ -34,4 +55,28 @@ public class Config {
     public void setDelay(int delay) {  // Add this setter
         this.delay = delay;
     }
+
+    public int getMinDelay() {
+        return minDelay;
+    }
+
+    public void setMinDelay(int minDelay) {
+        this.minDelay = minDelay;
+    }
+
+    public int getMaxDelay() {
+        return maxDelay;
+    }
+
+    public void setMaxDelay(int maxDelay) {
+        this.maxDelay = maxDelay;
+    }
+
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+    }
 }
\ No newline at end of file
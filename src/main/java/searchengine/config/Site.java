@@ -8,4 +8,5 @@ import lombok.Setter;
 public class Site {
     private String url;
     private String name;
+    private UrlRules urlRules;
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
+import java.util.Objects;
 
 @Getter
 @Setter
@@ -13,4 +14,34 @@ import java.util.List;
 @ConfigurationProperties(prefix = "indexing-settings")
 public class SitesList {
     private List<Site> sites;
+    private int maxDepth = 1000;
+    private int maxPagesPerSite = 10_000;
+    private int fetchThreads = 32;
+    private int parseThreads = 0;
+    private int persistBatchSize = 50;
+    private int pipelineQueueCapacity = 256;
+    private int lemmaCacheSize = 200_000;
+    private String frontierDir = "data/frontier";
+    private int frontierCheckpointInterval = 10_000;
+    private UrlRules urlRules = UrlRules.defaults();
+    private int robotsCacheMinutes = 1440;
+    private boolean useSitemaps = true;
+    private int maxSitemapFiles = 100;
+    private int pageIndexThreads = 2;
+    private int pageIndexQueueCapacity = 1000;
+    private int pageIndexHistory = 1000;
+    private int pageBatchMaxUrls = 1000;
+
+    /**
+     * The common url-rules with those of the configured site at {@code siteUrl} applied on top.
+     */
+    public UrlRules rulesFor(String siteUrl) {
+        UrlRules siteRules = sites.stream()
+                .filter(site -> site.getUrl().equals(siteUrl))
+                .map(Site::getUrlRules)
+                .filter(Objects::nonNull)
+                .findFirst()
+                .orElse(null);
+        return urlRules.merge(siteRules);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,67 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rules for which links of a site are crawled. Set under {@code indexing-settings.url-rules} for
+ * all sites and under a site's {@code url-rules} for that site: its lists are added to the common
+ * ones, its flags override them.
+ */
+@Getter
+@Setter
+public class UrlRules {
+    // Regular expressions matched against the path, a match excludes the URL
+    private List<String> exclude = new ArrayList<>();
+    // Query parameters removed from URLs, a trailing * matches a prefix
+    private List<String> ignoredParameters = new ArrayList<>();
+    private Boolean allowQuery;
+    private Boolean respectRobots;
+
+    /**
+     * Rules used when none are configured: binary files, feeds and AMP copies are skipped and
+     * tracking parameters are dropped. Other URLs with a query are kept, as before the rules.
+     */
+    public static UrlRules defaults() {
+        UrlRules rules = new UrlRules();
+        rules.exclude.addAll(List.of(
+                "\\.(pdf|jpe?g|png|gif|zip|docx?|xlsx?|pptx?|js|css|xml|json)$",
+                "/feed/?$",
+                "/amp/?$"));
+        rules.ignoredParameters.addAll(List.of("utm_*", "fbclid", "gclid", "yclid", "_openstat"));
+        return rules;
+    }
+
+    /**
+     * These rules with a site's rules applied on top.
+     */
+    public UrlRules merge(UrlRules site) {
+        UrlRules merged = new UrlRules();
+        merged.exclude = new ArrayList<>(exclude);
+        merged.ignoredParameters = new ArrayList<>(ignoredParameters);
+        merged.allowQuery = allowQuery;
+        merged.respectRobots = respectRobots;
+        if (site != null) {
+            merged.exclude.addAll(site.exclude);
+            merged.ignoredParameters.addAll(site.ignoredParameters);
+            if (site.allowQuery != null) {
+                merged.allowQuery = site.allowQuery;
+            }
+            if (site.respectRobots != null) {
+                merged.respectRobots = site.respectRobots;
+            }
+        }
+        return merged;
+    }
+
+    public boolean isAllowQuery() {
+        return !Boolean.FALSE.equals(allowQuery);
+    }
+
+    public boolean isRespectRobots() {
+        return !Boolean.FALSE.equals(respectRobots);
+    }
+}
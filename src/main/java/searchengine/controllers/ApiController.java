@@ -10,6 +10,7 @@ import searchengine.services.SearchService;
 import searchengine.services.StatisticsService;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -21,9 +22,10 @@ public class ApiController {
     private final SearchService searchService;
 
     @GetMapping("/startIndexing")
-    public ResponseEntity<Map<String, Object>> startIndexing() {
+    public ResponseEntity<Map<String, Object>> startIndexing(
+            @RequestParam(defaultValue = "false") boolean incremental) {
         Map<String, Object> response = new HashMap<>();
-        boolean result = indexingService.startIndexing();
+        boolean result = indexingService.startIndexing(incremental);
         response.put("result", result);
         if (!result) {
             response.put("error", "Индексация уже запущена");
@@ -44,11 +46,39 @@ public class ApiController {
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/resumeIndexing")
+    public ResponseEntity<Map<String, Object>> resumeIndexing() {
+        Map<String, Object> response = new HashMap<>();
+        boolean running = indexingService.isIndexingRunning();
+        boolean result = !running && indexingService.resumeIndexing();
+        response.put("result", result);
+        if (!result) {
+            response.put("error", running ? "Индексация уже запущена" : "Нет прерванной индексации");
+            return ResponseEntity.badRequest().body(response);
+        }
+        return ResponseEntity.ok(response);
+    }
+
     @PostMapping("/indexPage")
     public ResponseEntity<Map<String, Object>> indexPage(@RequestParam String url) {
         return indexingService.indexPage(url);
     }
 
+    @PostMapping("/indexPages")
+    public ResponseEntity<Map<String, Object>> indexPages(@RequestBody List<String> urls) {
+        return indexingService.indexPages(urls);
+    }
+
+    @GetMapping("/indexPage/{jobId}")
+    public ResponseEntity<Map<String, Object>> indexPageStatus(@PathVariable String jobId) {
+        return indexingService.indexPageStatus(jobId);
+    }
+
+    @GetMapping("/indexPages/{jobId}")
+    public ResponseEntity<Map<String, Object>> indexPagesStatus(@PathVariable String jobId) {
+        return indexingService.indexPagesStatus(jobId);
+    }
+
     @GetMapping("/statistics")
     public ResponseEntity<StatisticsResponse> statistics() {
         return ResponseEntity.ok(statisticsService.getStatistics());
@@ -59,9 +89,13 @@ public class ApiController {
             @RequestParam String query,
             @RequestParam(required = false) String site,
             @RequestParam(defaultValue = "0") int offset,
-            @RequestParam(defaultValue = "20") int limit) {
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(defaultValue = "and") String mode,
+            @RequestParam(defaultValue = "1") int minMatch) {
 
-        SearchResponse response = searchService.search(query, site, offset, limit);
+        // In "or" mode a page needs only minMatch of the query words, by default any one of them
+        int requiredMatches = "or".equalsIgnoreCase(mode) ? Math.max(1, minMatch) : 0;
+        SearchResponse response = searchService.search(query, site, offset, limit, requiredMatches);
         return response.isResult() ?
                 ResponseEntity.ok(response) :
                 ResponseEntity.badRequest().body(response);
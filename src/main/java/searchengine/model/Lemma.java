@@ -4,30 +4,24 @@ package searchengine.model;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
-import org.hibernate.annotations.OnDelete;
-import org.hibernate.annotations.OnDeleteAction;
 
+/**
+ * Global lemma dictionary: one row and one stable id per distinct lemma across all sites.
+ * Per-site document frequencies are kept in {@link SiteLemma}.
+ */
 @Entity
 @Table(name = "lemma",
         indexes = {
-                @jakarta.persistence.Index(name = "idx_lemma_lemma_site", columnList = "lemma,site_id", unique = true),
-                @jakarta.persistence.Index(name = "idx_lemma_frequency", columnList = "frequency")
+                @jakarta.persistence.Index(name = "idx_lemma_lemma", columnList = "lemma", unique = true)
         })
 @Getter
 @Setter
 public class Lemma {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private Long id;
+    private Integer id;
 
-    @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "site_id", nullable = false, foreignKey = @ForeignKey(name = "fk_lemma_site"))
-    @OnDelete(action = OnDeleteAction.CASCADE)
-    private Site site;
-
-    @Column(name = "lemma", nullable = false, length = 255)
+    // Binary collation, the default one would treat "е" and "ё" as the same lemma
+    @Column(name = "lemma", columnDefinition = "VARCHAR(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL")
     private String lemma;
-
-    @Column(name = "frequency", nullable = false)
-    private int frequency;
-}
\ No newline at end of file
+}
@@ -27,6 +27,15 @@ public class Page {
     @Column(name = "code", nullable = false)
     private int code;
 
-    @Column(name = "content", columnDefinition = "MEDIUMTEXT NOT NULL")
-    private String content;
+    @Column(name = "title", length = 512)
+    private String title;
+
+    @Column(name = "etag", length = 255)
+    private String etag;
+
+    @Column(name = "last_modified", length = 64)
+    private String lastModified;
+
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
 }
\ No newline at end of file
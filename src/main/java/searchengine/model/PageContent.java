@@ -0,0 +1,37 @@
+package searchengine.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+/**
+ * Deflate-compressed HTML of a page, kept apart from {@link Page} so that page queries
+ * never load bodies. {@code text} and {@code offsets} hold the page's plain text and its
+ * encoded {@link searchengine.utils.lemmatization.TokenOffsets}, both compressed as well.
+ */
+@Entity
+@Table(name = "page_content")
+@Getter
+@Setter
+public class PageContent {
+    @Id
+    @Column(name = "page_id")
+    private Integer pageId;
+
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "page_id", foreignKey = @ForeignKey(name = "fk_page_content_page"))
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Page page;
+
+    @Column(name = "html", columnDefinition = "LONGBLOB NOT NULL")
+    private byte[] html;
+
+    @Column(name = "text", columnDefinition = "LONGBLOB")
+    private byte[] text;
+
+    @Column(name = "offsets", columnDefinition = "LONGBLOB")
+    private byte[] offsets;
+}
@@ -0,0 +1,41 @@
+package searchengine.model;
+
+import jakarta.persistence.*;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.Serializable;
+
+/**
+ * Number of pages of a site containing a lemma.
+ */
+@Entity
+@Table(name = "site_lemma",
+        indexes = {
+                @jakarta.persistence.Index(name = "idx_site_lemma_site", columnList = "site_id"),
+                @jakarta.persistence.Index(name = "idx_site_lemma_lemma", columnList = "lemma_id")
+        })
+@IdClass(SiteLemma.Key.class)
+@Getter
+@Setter
+public class SiteLemma {
+    @Id
+    @Column(name = "site_id", nullable = false)
+    private int siteId;
+
+    @Id
+    @Column(name = "lemma_id", nullable = false)
+    private int lemmaId;
+
+    @Column(name = "frequency", nullable = false)
+    private int frequency;
+
+    @Getter
+    @Setter
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private int siteId;
+        private int lemmaId;
+    }
+}
@@ -1,5 +1,6 @@
 package searchengine.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -7,29 +8,52 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.Index;
-import searchengine.model.Lemma;
 import searchengine.model.Page;
 import searchengine.model.Site;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface IndexRepository extends JpaRepository<Index, Long> {
-    @Query("SELECT i.page FROM Index i WHERE i.lemma = :lemma")
-    List<Page> findPagesByLemma(@Param("lemma") Lemma lemma);
-
-    @Query("SELECT i.page FROM Index i WHERE i.lemma = :lemma AND i.page IN :pages")
-    List<Page> findPagesByLemmaAndPageIn(
-            @Param("lemma") Lemma lemma,
-            @Param("pages") List<Page> pages
+    /**
+     * Ranks pages containing at least {@code minMatch} of the required lemmas in one pass over
+     * search_index. Returns {@code [pageId, rankSum]} ordered by descending rank sum, where the sum
+     * covers all scoring lemmas.
+     */
+    @Query("SELECT i.page.id, SUM(i.rank) FROM Index i " +
+            "WHERE i.lemma.id IN :scoring " +
+            "GROUP BY i.page.id " +
+            "HAVING COUNT(CASE WHEN i.lemma.id IN :required THEN 1 END) >= :minMatch " +
+            "ORDER BY SUM(i.rank) DESC, i.page.id")
+    List<Object[]> rankPages(
+            @Param("required") Collection<Integer> requiredLemmaIds,
+            @Param("scoring") Collection<Integer> scoringLemmaIds,
+            @Param("minMatch") long minMatch
     );
 
-    @Query("SELECT SUM(i.rank) FROM Index i WHERE i.page = :page AND i.lemma.lemma IN :lemmas")
-    Double sumRankByPageAndLemmas(
-            @Param("page") Page page,
-            @Param("lemmas") List<String> lemmas
+    @Query("SELECT i.page.id, SUM(i.rank) FROM Index i " +
+            "WHERE i.lemma.id IN :scoring AND i.page.site.id = :siteId " +
+            "GROUP BY i.page.id " +
+            "HAVING COUNT(CASE WHEN i.lemma.id IN :required THEN 1 END) >= :minMatch " +
+            "ORDER BY SUM(i.rank) DESC, i.page.id")
+    List<Object[]> rankPagesOfSite(
+            @Param("siteId") int siteId,
+            @Param("required") Collection<Integer> requiredLemmaIds,
+            @Param("scoring") Collection<Integer> scoringLemmaIds,
+            @Param("minMatch") long minMatch
     );
 
+    @Query("SELECT i.id, i.page.id, i.page.site.id, i.lemma.id, i.rank FROM Index i WHERE i.id > :after ORDER BY i.id")
+    List<Object[]> findRowsAfter(@Param("after") int after, Pageable pageable);
+
+    /**
+     * Returns {@code [siteId, pages, rankSum]} for every site with index rows, the totals the
+     * in-memory index is checked against after it loads.
+     */
+    @Query("SELECT i.page.site.id, COUNT(DISTINCT i.page.id), SUM(i.rank) FROM Index i GROUP BY i.page.site.id")
+    List<Object[]> siteTotals();
+
     @Modifying
     @Transactional
     @Query("DELETE FROM Index i WHERE i.page = :page")
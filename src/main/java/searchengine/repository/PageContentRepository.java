@@ -0,0 +1,16 @@
+package searchengine.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import searchengine.model.PageContent;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface PageContentRepository extends JpaRepository<PageContent, Integer> {
+    @Query("SELECT c.pageId, c.text, c.offsets FROM PageContent c WHERE c.pageId IN :pageIds")
+    List<Object[]> findTextsByPageIdIn(@Param("pageIds") Collection<Integer> pageIds);
+}
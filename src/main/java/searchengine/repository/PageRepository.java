@@ -9,6 +9,7 @@ import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.Page;
 import searchengine.model.Site;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -22,6 +23,19 @@ public interface PageRepository extends JpaRepository<Page, Integer> {
     @Query("DELETE FROM Page p WHERE p.site = :site")
     void deleteBySite(@Param("site") Site site);
 
+    @Query("SELECT p.id FROM Page p WHERE p.site = :site")
+    List<Integer> findIdsBySite(@Param("site") Site site);
+
+    @Query("SELECT p.id, p.path, p.etag, p.lastModified, p.contentHash FROM Page p WHERE p.site = :site")
+    List<Object[]> findPageStatesBySite(@Param("site") Site site);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Page p SET p.etag = :etag, p.lastModified = :lastModified WHERE p.id = :id")
+    void updateValidators(@Param("id") int id,
+                          @Param("etag") String etag,
+                          @Param("lastModified") String lastModified);
+
     @Query("SELECT COUNT(p) FROM Page p WHERE p.site = :site")
     long countBySite(@Param("site") Site site);
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package searchengine.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.model.SiteLemma;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface SiteLemmaRepository extends JpaRepository<SiteLemma, SiteLemma.Key> {
+    /**
+     * Returns {@code [lemmaId, pages]}: the number of pages containing each lemma over all sites.
+     */
+    @Query("SELECT s.lemmaId, SUM(s.frequency) FROM SiteLemma s WHERE s.lemmaId IN :lemmaIds GROUP BY s.lemmaId")
+    List<Object[]> sumFrequencies(@Param("lemmaIds") Collection<Integer> lemmaIds);
+
+    @Query("SELECT s.lemmaId, s.frequency FROM SiteLemma s WHERE s.lemmaId IN :lemmaIds AND s.siteId = :siteId")
+    List<Object[]> findFrequencies(@Param("lemmaIds") Collection<Integer> lemmaIds, @Param("siteId") int siteId);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE SiteLemma s SET s.frequency = s.frequency - 1 " +
+            "WHERE s.siteId = :siteId AND s.lemmaId IN " +
+            "(SELECT i.lemma.id FROM Index i WHERE i.page.id = :pageId)")
+    void decrementFrequencyForPage(@Param("siteId") int siteId, @Param("pageId") int pageId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM SiteLemma s WHERE s.siteId = :siteId AND s.frequency <= 0")
+    void deleteUnusedBySite(@Param("siteId") int siteId);
+
+    @Query("SELECT COUNT(s) FROM SiteLemma s WHERE s.siteId = :siteId")
+    int countBySite(@Param("siteId") int siteId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM SiteLemma s WHERE s.siteId = :siteId")
+    void deleteBySite(@Param("siteId") int siteId);
+}
@@ -2,14 +2,23 @@ package searchengine.services;
 
 import org.springframework.http.ResponseEntity;
 
+import java.util.List;
 import java.util.Map;
 
 public interface IndexingService {
-    boolean startIndexing();
+    boolean startIndexing(boolean incremental);
 
     boolean stopIndexing();
 
+    boolean resumeIndexing();
+
     boolean isIndexingRunning();
 
     ResponseEntity<Map<String, Object>> indexPage(String url);
+
+    ResponseEntity<Map<String, Object>> indexPages(List<String> urls);
+
+    ResponseEntity<Map<String, Object>> indexPageStatus(String jobId);
+
+    ResponseEntity<Map<String, Object>> indexPagesStatus(String jobId);
 }
\ No newline at end of file
@@ -2,19 +2,20 @@ package searchengine.services;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import searchengine.config.Config;
 import searchengine.config.SitesList;
 import searchengine.model.*;
-import searchengine.repository.*;
+import searchengine.repository.SiteRepository;
+import searchengine.services.crawler.CrawlPipeline;
+import searchengine.services.crawler.FrontierStore;
+import searchengine.services.crawler.UrlCanonicalizer;
+import searchengine.services.index.PageWriter;
 
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 @Slf4j
 @Service
@@ -22,40 +23,28 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public class IndexingServiceImpl implements IndexingService {
     private final SitesList sites;
     private final SiteRepository siteRepository;
-    private final PageRepository pageRepository;
-    private final LemmaRepository lemmaRepository;
-    private final IndexRepository indexRepository;
-    private final Config config;
-    private final LemmatizationService lemmatizationService;
-    private final PageIndexer pageIndexer;
-
-    private ForkJoinPool pool;
-    private volatile boolean indexingStopped = false;
-    private final Map<String, Set<String>> processedUrls = new ConcurrentHashMap<>();
-    private final Map<String, AtomicBoolean> indexingFlags = new ConcurrentHashMap<>();
+    private final PageWriter pageWriter;
+    private final CrawlPipeline crawlPipeline;
+    private final FrontierStore frontierStore;
+    private final PageIndexQueue pageIndexQueue;
+    // Site URL -> canonicalizer of its links, the configuration does not change at runtime
+    private final Map<String, UrlCanonicalizer> canonicalizers = new ConcurrentHashMap<>();
 
     @Override
-    @Transactional
-    public boolean startIndexing() {
+    public boolean startIndexing(boolean incremental) {
         try {
             if (isIndexingRunning()) {
                 log.warn("Indexing already in progress");
                 return false;
             }
 
-            indexingStopped = false;
-            pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
-            processedUrls.clear();
-            indexingFlags.clear();
-
+            List<Site> sitesToCrawl = new ArrayList<>();
             sites.getSites().forEach(configSite -> {
-                if (indexingStopped) return;
-
                 Optional<Site> existingSite = siteRepository.findFirstByUrl(configSite.getUrl());
                 Site site = existingSite.orElseGet(Site::new);
 
-                if (existingSite.isPresent()) {
-                    clearSiteData(site);
+                if (existingSite.isPresent() && !incremental) {
+                    pageWriter.clearSite(site);
                 }
 
                 site.setUrl(configSite.getUrl());
@@ -63,31 +52,10 @@ public class IndexingServiceImpl implements IndexingService {
                 site.setStatus(Site.Status.INDEXING);
                 site.setStatusTime(LocalDateTime.now());
                 site.setLastError(null);
-                siteRepository.save(site);
-
-                Set<String> siteProcessedUrls = ConcurrentHashMap.newKeySet();
-                processedUrls.put(site.getUrl(), siteProcessedUrls);
-
-                AtomicBoolean siteIndexingFlag = new AtomicBoolean(false);
-                indexingFlags.put(site.getUrl(), siteIndexingFlag);
-
-                pool.execute(new SiteIndexer(
-                        site,
-                        site.getUrl(),
-                        siteRepository,
-                        pageRepository,
-                        lemmaRepository,
-                        indexRepository,
-                        lemmatizationService,
-                        config.getUserAgent(),
-                        config.getReferrer(),
-                        config.getDelay(),
-                        siteProcessedUrls,
-                        siteIndexingFlag
-                ));
+                sitesToCrawl.add(siteRepository.save(site));
             });
 
-            new Thread(this::monitorIndexing).start();
+            crawlPipeline.start(sitesToCrawl, incremental);
             return true;
         } catch (Exception e) {
             log.error("Error starting indexing", e);
@@ -96,95 +64,78 @@ public class IndexingServiceImpl implements IndexingService {
         }
     }
 
-    private void monitorIndexing() {
-        try {
-            while (!pool.isTerminated()) {
-                updateSiteStatuses();
-                Thread.sleep(5000);
-            }
-            updateSiteStatuses();
-            log.info("Indexing completed successfully");
-        } catch (InterruptedException e) {
-            log.error("Indexing monitoring interrupted", e);
-            Thread.currentThread().interrupt();
-        } finally {
-            pool = null;
-            processedUrls.clear();
-            indexingFlags.clear();
+    @Override
+    public boolean stopIndexing() {
+        if (!crawlPipeline.stop()) {
+            return false;
         }
-    }
 
-    private void updateSiteStatuses() {
-        sites.getSites().forEach(configSite -> {
-            Site site = siteRepository.findFirstByUrl(configSite.getUrl()).orElse(null);
-            if (site != null && site.getStatus() == Site.Status.INDEXING) {
-                long processedCount = processedUrls.getOrDefault(site.getUrl(), Collections.emptySet()).size();
-
-                if (processedCount > 0) {
-                    site.setStatusTime(LocalDateTime.now());
-                    if (pool.isQuiescent()) {
-                        site.setStatus(Site.Status.INDEXED);
-                    }
-                    siteRepository.save(site);
-                }
-            }
+        List<Site> indexingSites = siteRepository.findByStatus(Site.Status.INDEXING);
+        indexingSites.forEach(site -> {
+            site.setStatus(Site.Status.FAILED);
+            site.setLastError("Indexing stopped by user");
+            siteRepository.save(site);
         });
+        return true;
     }
 
+    /**
+     * Continues crawls that were stopped or cut off by a restart, using their frontier logs.
+     * Returns {@code false} when indexing is running or no site has an unfinished crawl.
+     */
     @Override
-    public boolean stopIndexing() {
-        if (pool != null) {
-            indexingStopped = true;
-            indexingFlags.values().forEach(flag -> flag.set(true));
-            pool.shutdownNow();
-
-            List<Site> indexingSites = siteRepository.findByStatus(Site.Status.INDEXING);
-            indexingSites.forEach(site -> {
-                site.setStatus(Site.Status.FAILED);
-                site.setLastError("Indexing stopped by user");
-                siteRepository.save(site);
-            });
+    public boolean resumeIndexing() {
+        if (isIndexingRunning()) {
+            log.warn("Indexing already in progress");
+            return false;
+        }
 
-            processedUrls.clear();
-            indexingFlags.clear();
-            return true;
+        List<Site> sitesToResume = new ArrayList<>();
+        sites.getSites().forEach(configSite -> siteRepository.findFirstByUrl(configSite.getUrl())
+                .filter(site -> site.getStatus() != Site.Status.INDEXED && frontierStore.exists(site))
+                .ifPresent(site -> {
+                    site.setStatus(Site.Status.INDEXING);
+                    site.setStatusTime(LocalDateTime.now());
+                    site.setLastError(null);
+                    sitesToResume.add(siteRepository.save(site));
+                }));
+        if (sitesToResume.isEmpty()) {
+            return false;
         }
-        return false;
+
+        crawlPipeline.resume(sitesToResume);
+        return true;
     }
 
     @Override
     public boolean isIndexingRunning() {
-        return pool != null && !pool.isShutdown() && !pool.isTerminated();
+        return crawlPipeline.isRunning();
     }
 
     @Override
-    @Transactional
     public ResponseEntity<Map<String, Object>> indexPage(String url) {
         Map<String, Object> response = new HashMap<>();
 
         try {
-            Optional<searchengine.config.Site> configSite = sites.getSites().stream()
-                    .filter(s -> url.startsWith(s.getUrl()))
-                    .findFirst();
+            Optional<searchengine.config.Site> configSite = findConfigSite(url);
+            PageTarget target = configSite.map(found -> PageTarget.of(canonicalizer(found), url)).orElse(null);
 
-            if (configSite.isEmpty()) {
+            if (target == null) {
                 response.put("result", false);
-                response.put("error", "Page outside of config sites");
+                response.put("error", configSite.isEmpty() ? "Page outside of config sites" : "Page excluded by url-rules");
                 return ResponseEntity.badRequest().body(response);
             }
 
-            Site site = siteRepository.findFirstByUrl(configSite.get().getUrl())
-                    .orElseGet(() -> {
-                        Site newSite = new Site();
-                        newSite.setUrl(configSite.get().getUrl());
-                        newSite.setName(configSite.get().getName());
-                        newSite.setStatus(Site.Status.INDEXING);
-                        newSite.setStatusTime(LocalDateTime.now());
-                        return siteRepository.save(newSite);
-                    });
-
-            pageIndexer.index(site, url);
+            Site site = findOrCreateSite(configSite.get());
+            Optional<PageIndexQueue.JobStatus> job = pageIndexQueue.submit(site, target);
+            if (job.isEmpty()) {
+                response.put("result", false);
+                response.put("error", "Очередь индексации страниц переполнена");
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+            }
             response.put("result", true);
+            response.put("jobId", job.get().id());
+            response.put("status", job.get().status());
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             response.put("result", false);
@@ -193,12 +144,128 @@ public class IndexingServiceImpl implements IndexingService {
         }
     }
 
-    @Transactional
-    protected void clearSiteData(Site site) {
-        if (site.getId() != null) {
-            indexRepository.deleteBySite(site);
-            lemmaRepository.deleteBySite(site);
-            pageRepository.deleteBySite(site);
+    /**
+     * Queues the pages as one batch job and returns at once. URLs are canonicalized as in a crawl
+     * and variants of one page are queued once. URLs outside the configured sites and URLs the
+     * site's url-rules refuse are listed in the response and not queued.
+     */
+    @Override
+    public ResponseEntity<Map<String, Object>> indexPages(List<String> urls) {
+        Map<String, Object> response = new HashMap<>();
+        List<String> distinct = urls == null ? List.of() : urls.stream()
+                .filter(Objects::nonNull)
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .distinct()
+                .toList();
+
+        if (distinct.isEmpty()) {
+            response.put("result", false);
+            response.put("error", "Не указаны адреса страниц");
+            return ResponseEntity.badRequest().body(response);
+        }
+        if (distinct.size() > sites.getPageBatchMaxUrls()) {
+            response.put("result", false);
+            response.put("error", "Слишком много адресов, не более " + sites.getPageBatchMaxUrls());
+            return ResponseEntity.badRequest().body(response);
         }
+
+        try {
+            List<String> outsideSites = new ArrayList<>();
+            List<String> excluded = new ArrayList<>();
+            Map<searchengine.config.Site, List<PageTarget>> byConfigSite = new LinkedHashMap<>();
+            Set<String> keys = new HashSet<>();
+            for (String url : distinct) {
+                Optional<searchengine.config.Site> configSite = findConfigSite(url);
+                PageTarget target = configSite.map(found -> PageTarget.of(canonicalizer(found), url)).orElse(null);
+                if (configSite.isEmpty()) {
+                    outsideSites.add(url);
+                } else if (target == null) {
+                    excluded.add(url);
+                } else if (keys.add(target.key())) {
+                    byConfigSite.computeIfAbsent(configSite.get(), key -> new ArrayList<>()).add(target);
+                }
+            }
+            if (byConfigSite.isEmpty()) {
+                response.put("result", false);
+                response.put("error", "Нет страниц для индексации: адреса вне заданных сайтов или исключены url-rules");
+                response.put("outsideSites", outsideSites);
+                response.put("excluded", excluded);
+                return ResponseEntity.badRequest().body(response);
+            }
+
+            Map<Site, List<PageTarget>> bySite = new LinkedHashMap<>();
+            byConfigSite.forEach((configSite, targets) -> bySite.put(findOrCreateSite(configSite), targets));
+            Optional<PageIndexQueue.BatchStatus> batch = pageIndexQueue.submitBatch(bySite);
+            if (batch.isEmpty()) {
+                response.put("result", false);
+                response.put("error", "Очередь индексации страниц переполнена");
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+            }
+            response.put("result", true);
+            response.put("jobId", batch.get().id());
+            response.put("status", batch.get().status());
+            response.put("queued", batch.get().total());
+            response.put("outsideSites", outsideSites);
+            response.put("excluded", excluded);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            response.put("result", false);
+            response.put("error", "Indexing error: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
+    @Override
+    public ResponseEntity<Map<String, Object>> indexPageStatus(String jobId) {
+        Map<String, Object> response = new HashMap<>();
+        Optional<PageIndexQueue.JobStatus> job = pageIndexQueue.status(jobId);
+        response.put("result", job.isPresent());
+        if (job.isEmpty()) {
+            response.put("error", "Задание не найдено");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+        response.put("job", job.get());
+        return ResponseEntity.ok(response);
+    }
+
+    @Override
+    public ResponseEntity<Map<String, Object>> indexPagesStatus(String jobId) {
+        Map<String, Object> response = new HashMap<>();
+        Optional<PageIndexQueue.BatchStatus> batch = pageIndexQueue.batchStatus(jobId);
+        response.put("result", batch.isPresent());
+        if (batch.isEmpty()) {
+            response.put("error", "Задание не найдено");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+        response.put("job", batch.get());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * The configured site of a URL. Host variants the crawl treats as the site, such as
+     * {@code www.} or another scheme, belong to it as well.
+     */
+    private Optional<searchengine.config.Site> findConfigSite(String url) {
+        return sites.getSites().stream()
+                .filter(s -> url.startsWith(s.getUrl()) || canonicalizer(s).canonicalize(url) != null)
+                .findFirst();
+    }
+
+    private UrlCanonicalizer canonicalizer(searchengine.config.Site configSite) {
+        return canonicalizers.computeIfAbsent(configSite.getUrl(),
+                siteUrl -> new UrlCanonicalizer(siteUrl, sites.rulesFor(siteUrl)));
+    }
+
+    private Site findOrCreateSite(searchengine.config.Site configSite) {
+        return siteRepository.findFirstByUrl(configSite.getUrl())
+                .orElseGet(() -> {
+                    Site newSite = new Site();
+                    newSite.setUrl(configSite.getUrl());
+                    newSite.setName(configSite.getName());
+                    newSite.setStatus(Site.Status.INDEXING);
+                    newSite.setStatusTime(LocalDateTime.now());
+                    return siteRepository.save(newSite);
+                });
     }
 }
\ No newline at end of file
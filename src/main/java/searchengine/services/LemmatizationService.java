@@ -1,9 +1,16 @@
 package searchengine.services;
 
 import org.jsoup.Jsoup;
+import org.jsoup.nodes.Node;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import searchengine.utils.PageTextWriter;
+import searchengine.utils.lemmatization.DocumentTextReader;
+import searchengine.utils.lemmatization.TokenOffsets;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.List;
 import java.util.Map;
 
@@ -20,6 +27,27 @@ public class LemmatizationService {
         return lemmatizer.getLemmas(cleanHtml(text));
     }
 
+    /**
+     * Lemmatizes the visible text of a parsed document in a single walk over its text nodes,
+     * keeping token offsets for snippets. The text itself is only written to {@code textSink}.
+     */
+    public TokenOffsets analyze(Node root, Writer textSink) {
+        return lemmatizer.analyze(new DocumentTextReader(root, textSink));
+    }
+
+    /**
+     * Hashes the visible text of a parsed document without lemmatizing it.
+     */
+    public String contentHash(Node root) {
+        PageTextWriter digest = new PageTextWriter(false);
+        try (DocumentTextReader reader = new DocumentTextReader(root, null)) {
+            reader.transferTo(digest);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return digest.hash();
+    }
+
     public List<String> getLemmaList(String text) {
         return lemmatizer.getLemmaList(cleanHtml(text));
     }
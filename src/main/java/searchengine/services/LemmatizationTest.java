@@ -1,11 +1,14 @@
 package searchengine.services;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import searchengine.config.SitesList;
+
 import java.util.Map;
 
 public class LemmatizationTest {
     public static void main(String[] args) {
         // Создаем зависимость RussianLemmatizer
-        RussianLemmatizer russianLemmatizer = new RussianLemmatizer();
+        RussianLemmatizer russianLemmatizer = new RussianLemmatizer(new SitesList(), new SimpleMeterRegistry());
 
         // Передаем зависимость в конструктор
         LemmatizationService lemmatizer = new LemmatizationService(russianLemmatizer);
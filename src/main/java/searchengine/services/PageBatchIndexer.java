@@ -0,0 +1,155 @@
+package searchengine.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.SitesList;
+import searchengine.model.Site;
+import searchengine.services.crawler.HostScheduler;
+import searchengine.services.crawler.PageFetcher;
+import searchengine.services.index.PageWriter;
+import searchengine.services.index.ParsedPage;
+
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reindexes a list of pages for a {@link PageIndexQueue} batch job. Fetches are queued in
+ * {@link HostScheduler}, so each host gets the delay and connection limit of a crawl while
+ * different hosts are fetched in parallel. The parsed pages are stored with their index rows
+ * {@code indexing-settings.persist-batch-size} per transaction, instead of one transaction per page.
+ */
+@Slf4j
+@Component
+public class PageBatchIndexer {
+    private final PageIndexer pageIndexer;
+    private final PageFetcher pageFetcher;
+    private final HostScheduler hostScheduler;
+    private final PageWriter pageWriter;
+    private final SitesList settings;
+    private final ThreadPoolExecutor workers;
+
+    public PageBatchIndexer(PageIndexer pageIndexer, PageFetcher pageFetcher, HostScheduler hostScheduler,
+                            PageWriter pageWriter, SitesList settings) {
+        this.pageIndexer = pageIndexer;
+        this.pageFetcher = pageFetcher;
+        this.hostScheduler = hostScheduler;
+        this.pageWriter = pageWriter;
+        this.settings = settings;
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(settings.getFetchThreads(), settings.getFetchThreads(),
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "index-batch-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        // Batches are rare, the threads are not kept between them
+        this.workers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Fetches and indexes the pages of each site, reporting every URL to the listener. Blocks
+     * until all pages are stored or have failed. A page is reported indexed only once its
+     * transaction has committed.
+     */
+    public void index(Map<Site, List<PageTarget>> pagesBySite, Listener listener) throws InterruptedException {
+        Batch batch = new Batch(pagesBySite.values().stream().mapToInt(List::size).sum());
+        pagesBySite.forEach((site, targets) -> {
+            String host = URI.create(site.getUrl()).getHost();
+            for (PageTarget target : targets) {
+                hostScheduler.submit(host, batch, slot -> {
+                    try {
+                        workers.execute(() -> fetch(batch, site, target, slot, listener));
+                    } catch (RejectedExecutionException e) {
+                        slot.cancel();
+                        listener.failed(target.url(), "Rejected");
+                        batch.pending.countDown();
+                    }
+                });
+            }
+        });
+
+        try {
+            batch.pending.await();
+        } catch (InterruptedException e) {
+            hostScheduler.cancel(batch);
+            throw e;
+        }
+        store(new ArrayList<>(batch.parsed), listener);
+    }
+
+    /**
+     * Receives the outcome of each URL of a batch, from the fetch threads and the calling thread.
+     */
+    public interface Listener {
+        void started(String url);
+
+        void indexed(String url, int code);
+
+        void failed(String url, String error);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private void fetch(Batch batch, Site site, PageTarget target, HostScheduler.Slot slot, Listener listener) {
+        String url = target.url();
+        listener.started(url);
+        long started = System.currentTimeMillis();
+        try {
+            PageFetcher.Response response = pageFetcher.fetchPage(url, Map.of());
+            slot.done(response.statusCode(), System.currentTimeMillis() - started, response.header("Retry-After"));
+            batch.parsed.add(new Parsed(url, pageIndexer.parse(site, target.path(), response)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            listener.failed(url, "Interrupted");
+        } catch (Exception e) {
+            // A no-op when the fetch succeeded and only parsing failed
+            slot.failed(System.currentTimeMillis() - started);
+            log.warn("Could not index page {}: {}", url, e.getMessage());
+            listener.failed(url, e.getMessage());
+        } finally {
+            slot.cancel();
+            batch.pending.countDown();
+        }
+    }
+
+    /**
+     * A chunk that fails to store is stored again page by page, so one bad page fails only itself.
+     */
+    private void store(List<Parsed> pages, Listener listener) {
+        int chunkSize = Math.max(1, settings.getPersistBatchSize());
+        for (int from = 0; from < pages.size(); from += chunkSize) {
+            List<Parsed> chunk = pages.subList(from, Math.min(pages.size(), from + chunkSize));
+            try {
+                pageWriter.write(chunk.stream().map(Parsed::page).toList());
+                chunk.forEach(page -> listener.indexed(page.url(), page.page().code()));
+            } catch (Exception e) {
+                log.error("Error storing {} pages", chunk.size(), e);
+                if (chunk.size() == 1) {
+                    listener.failed(chunk.get(0).url(), e.getMessage());
+                } else {
+                    chunk.forEach(page -> store(List.of(page), listener));
+                }
+            }
+        }
+    }
+
+    private record Parsed(String url, ParsedPage page) {
+    }
+
+    // Also the owner of the batch's tasks in HostScheduler
+    private static final class Batch {
+        private final Queue<Parsed> parsed = new ConcurrentLinkedQueue<>();
+        private final CountDownLatch pending;
+
+        private Batch(int size) {
+            this.pending = new CountDownLatch(size);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package searchengine.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.SitesList;
+import searchengine.model.Site;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Indexes pages off the request threads. Jobs wait in a bounded queue for a small worker pool. A
+ * URL that is already waiting, in any variant with the same canonical key, is not queued again, the caller gets the waiting job, which will
+ * fetch the page later than the request anyway. Finished jobs stay queryable until
+ * {@code indexing-settings.page-index-history} newer jobs have finished.
+ * <p>
+ * A batch takes one place in the queue and one worker, which runs its pages through
+ * {@link PageBatchIndexer}. Every page of a batch is a job of its own, so a URL of a waiting batch
+ * is not queued again either, and a batch reuses the jobs of URLs already waiting.
+ */
+@Slf4j
+@Component
+public class PageIndexQueue {
+    private final PageIndexer pageIndexer;
+    private final PageBatchIndexer pageBatchIndexer;
+    private final SitesList settings;
+    private final ThreadPoolExecutor workers;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    // Jobs not yet started, by the canonical key of their URL
+    private final Map<String, Job> waiting = new ConcurrentHashMap<>();
+    private final Queue<String> finished = new ConcurrentLinkedQueue<>();
+    private final Map<String, Batch> batches = new ConcurrentHashMap<>();
+    private final Queue<String> finishedBatches = new ConcurrentLinkedQueue<>();
+
+    public PageIndexQueue(PageIndexer pageIndexer, PageBatchIndexer pageBatchIndexer, SitesList settings) {
+        this.pageIndexer = pageIndexer;
+        this.pageBatchIndexer = pageBatchIndexer;
+        this.settings = settings;
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(settings.getPageIndexThreads(), settings.getPageIndexThreads(),
+                0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(settings.getPageIndexQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "index-page-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Queues the page, or returns the job already waiting for it. Empty when the queue is full.
+     */
+    public synchronized Optional<JobStatus> submit(Site site, PageTarget target) {
+        Job queued = waiting.get(target.key());
+        if (queued != null) {
+            return Optional.of(queued.status());
+        }
+
+        Job job = new Job(UUID.randomUUID().toString(), site, target);
+        jobs.put(job.id, job);
+        waiting.put(target.key(), job);
+        try {
+            workers.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            waiting.remove(target.key());
+            return Optional.empty();
+        }
+        return Optional.of(job.status());
+    }
+
+    /**
+     * Queues a batch of pages. URLs already waiting keep their job, which the batch reports but
+     * does not run. Empty when the queue is full.
+     */
+    public synchronized Optional<BatchStatus> submitBatch(Map<Site, List<PageTarget>> pagesBySite) {
+        Batch batch = new Batch(UUID.randomUUID().toString());
+        Map<Site, List<PageTarget>> owned = new LinkedHashMap<>();
+        pagesBySite.forEach((site, targets) -> {
+            for (PageTarget target : targets) {
+                Job job = waiting.get(target.key());
+                if (job == null) {
+                    job = new Job(UUID.randomUUID().toString(), site, target);
+                    jobs.put(job.id, job);
+                    waiting.put(target.key(), job);
+                    batch.owned.put(target.url(), job);
+                    owned.computeIfAbsent(site, key -> new ArrayList<>()).add(target);
+                }
+                batch.pages.add(job);
+            }
+        });
+
+        batches.put(batch.id, batch);
+        try {
+            workers.execute(() -> run(batch, owned));
+        } catch (RejectedExecutionException e) {
+            batches.remove(batch.id);
+            batch.owned.values().forEach(job -> {
+                jobs.remove(job.id);
+                waiting.remove(job.target.key());
+            });
+            return Optional.empty();
+        }
+        return Optional.of(batch.status());
+    }
+
+    public Optional<JobStatus> status(String id) {
+        return Optional.ofNullable(jobs.get(id)).map(Job::status);
+    }
+
+    public Optional<BatchStatus> batchStatus(String id) {
+        return Optional.ofNullable(batches.get(id)).map(Batch::status);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private void run(Job job) {
+        // Leaves the waiting map before fetching, so a later request for the URL gets a new job
+        synchronized (this) {
+            waiting.remove(job.target.key(), job);
+        }
+        job.start();
+        try {
+            job.finish(State.DONE, pageIndexer.index(job.site, job.target), null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.finish(State.FAILED, null, "Interrupted");
+        } catch (Exception e) {
+            log.error("Error indexing page {}", job.target.url(), e);
+            job.finish(State.FAILED, null, e.getMessage());
+        }
+        retire(job);
+    }
+
+    private void run(Batch batch, Map<Site, List<PageTarget>> owned) {
+        synchronized (this) {
+            batch.owned.values().forEach(job -> waiting.remove(job.target.key(), job));
+        }
+        batch.startedAt = LocalDateTime.now();
+        try {
+            pageBatchIndexer.index(owned, new PageBatchIndexer.Listener() {
+                @Override
+                public void started(String url) {
+                    batch.owned.get(url).start();
+                }
+
+                @Override
+                public void indexed(String url, int code) {
+                    finish(batch.owned.get(url), State.DONE, code, null);
+                }
+
+                @Override
+                public void failed(String url, String error) {
+                    finish(batch.owned.get(url), State.FAILED, null, error);
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Error indexing batch {}", batch.id, e);
+        } finally {
+            // Pages a failed or interrupted batch did not get to
+            batch.owned.values().forEach(job -> finish(job, State.FAILED, null, "Batch stopped"));
+            batch.finishedAt = LocalDateTime.now();
+            retireBatch(batch);
+        }
+    }
+
+    private void finish(Job job, State state, Integer code, String error) {
+        if (job.finish(state, code, error)) {
+            retire(job);
+        }
+    }
+
+    private void retire(Job job) {
+        finished.add(job.id);
+        while (finished.size() > settings.getPageIndexHistory()) {
+            String oldest = finished.poll();
+            if (oldest != null) {
+                jobs.remove(oldest);
+            }
+        }
+    }
+
+    private void retireBatch(Batch batch) {
+        finishedBatches.add(batch.id);
+        while (finishedBatches.size() > settings.getPageIndexHistory()) {
+            String oldest = finishedBatches.poll();
+            if (oldest != null) {
+                batches.remove(oldest);
+            }
+        }
+    }
+
+    public enum State {
+        QUEUED,
+        RUNNING,
+        DONE,
+        FAILED
+    }
+
+    /**
+     * A job as reported by the status endpoint, durations in milliseconds.
+     */
+    public record JobStatus(String id, String url, State status, Integer code, LocalDateTime queuedAt,
+                            LocalDateTime startedAt, LocalDateTime finishedAt,
+                            Long waitMillis, Long runMillis, String error) {
+    }
+
+    /**
+     * A batch as reported by the status endpoint. It is DONE once every page is DONE or FAILED,
+     * including pages whose jobs were queued before the batch.
+     */
+    public record BatchStatus(String id, State status, LocalDateTime queuedAt, LocalDateTime startedAt,
+                              LocalDateTime finishedAt, int total, long indexed, long failed,
+                              List<JobStatus> pages) {
+    }
+
+    private static final class Job {
+        private final String id;
+        private final Site site;
+        private final PageTarget target;
+        private final LocalDateTime queuedAt = LocalDateTime.now();
+        private volatile State state = State.QUEUED;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+        private volatile Integer code;
+        private volatile String error;
+
+        private Job(String id, Site site, PageTarget target) {
+            this.id = id;
+            this.site = site;
+            this.target = target;
+        }
+
+        private JobStatus status() {
+            LocalDateTime started = startedAt;
+            LocalDateTime ended = finishedAt;
+            Long wait = started != null ? Duration.between(queuedAt, started).toMillis() : null;
+            Long run = started != null ? Duration.between(started, ended != null ? ended : LocalDateTime.now()).toMillis() : null;
+            return new JobStatus(id, target.url(), state, code, queuedAt, started, ended, wait, run, error);
+        }
+
+        private void start() {
+            startedAt = LocalDateTime.now();
+            state = State.RUNNING;
+        }
+
+        /**
+         * Returns false when the job had already finished.
+         */
+        private synchronized boolean finish(State result, Integer code, String error) {
+            if (state == State.DONE || state == State.FAILED) {
+                return false;
+            }
+            if (startedAt == null) {
+                startedAt = LocalDateTime.now();
+            }
+            this.code = code;
+            this.error = error;
+            // The end time is set before the state, so a finished job always reports its timings
+            finishedAt = LocalDateTime.now();
+            state = result;
+            return true;
+        }
+    }
+
+    private static final class Batch {
+        private final String id;
+        private final LocalDateTime queuedAt = LocalDateTime.now();
+        // Jobs of all pages in request order, and by canonical URL the jobs this batch runs
+        private final List<Job> pages = new ArrayList<>();
+        private final Map<String, Job> owned = new HashMap<>();
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+
+        private Batch(String id) {
+            this.id = id;
+        }
+
+        private BatchStatus status() {
+            List<JobStatus> statuses = pages.stream().map(Job::status).toList();
+            long indexed = statuses.stream().filter(page -> page.status() == State.DONE).count();
+            long failed = statuses.stream().filter(page -> page.status() == State.FAILED).count();
+            boolean started = startedAt != null || statuses.stream().anyMatch(page -> page.status() != State.QUEUED);
+            State state = indexed + failed == statuses.size() ? State.DONE
+                    : started ? State.RUNNING : State.QUEUED;
+            return new BatchStatus(id, state, queuedAt, startedAt, finishedAt, statuses.size(),
+                    indexed, failed, statuses);
+        }
+    }
+}
@@ -1,105 +1,54 @@
 package searchengine.services;
 
 import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
-import org.jsoup.Connection;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
-import searchengine.model.Index;
-import searchengine.model.Lemma;
-import searchengine.model.Page;
 import searchengine.model.Site;
-import searchengine.repository.IndexRepository;
-import searchengine.repository.LemmaRepository;
-import searchengine.repository.PageRepository;
+import searchengine.services.crawler.PageFetcher;
+import searchengine.services.index.PageWriter;
+import searchengine.services.index.ParsedPage;
+import searchengine.utils.PageTextWriter;
+import searchengine.utils.lemmatization.TokenOffsets;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
-@Slf4j
 @Component
 @RequiredArgsConstructor
 public class PageIndexer {
-    private final PageRepository pageRepository;
-    private final LemmaRepository lemmaRepository;
-    private final IndexRepository indexRepository;
+    private final PageWriter pageWriter;
     private final LemmatizationService lemmatizationService;
-
-    public void index(Site site, String url) {
-        String baseUrl = site.getUrl().endsWith("/")
-                ? site.getUrl().substring(0, site.getUrl().length() - 1)
-                : site.getUrl();
-
-        String path = url.replaceFirst(baseUrl, "");
-        path = path.isEmpty() ? "/" : path;
-
-        try {
-            Connection.Response response = Jsoup.connect(url)
-                    .userAgent("SearchEngineBot")
-                    .referrer("https://www.google.com")
-                    .timeout(30_000)
-                    .ignoreHttpErrors(true)
-                    .execute();
-
-            if (response.statusCode() >= 400) {
-                log.warn("Skipping page with error code: {} - {}", response.statusCode(), url);
-                return;
-            }
-
-            Document doc = response.parse();
-            Page page = saveOrUpdatePage(site, path, response.statusCode(), doc.html());
-            processContent(page);
-        } catch (IOException e) {
-            log.error("Error indexing page: {}", url, e);
-        }
+    private final PageFetcher pageFetcher;
+
+    /**
+     * Fetches and indexes one page and returns its HTTP status. Fails when the page cannot be
+     * fetched or is not HTML.
+     */
+    public int index(Site site, PageTarget target) throws IOException, InterruptedException {
+        ParsedPage page = parse(site, target.path(), pageFetcher.fetchPage(target.url(), Map.of()));
+        pageWriter.write(List.of(page));
+        return page.code();
     }
 
-    private Page saveOrUpdatePage(Site site, String path, int statusCode, String content) {
-        return pageRepository.findByPathAndSite(path, site)
-                .map(existingPage -> {
-                    indexRepository.deleteByPage(existingPage);
-                    lemmaRepository.decrementFrequencyForPage(existingPage);
-
-                    existingPage.setCode(statusCode);
-                    existingPage.setContent(content);
-                    return pageRepository.save(existingPage);
-                })
-                .orElseGet(() -> {
-                    Page newPage = new Page();
-                    newPage.setSite(site);
-                    newPage.setPath(path);
-                    newPage.setCode(statusCode);
-                    newPage.setContent(content);
-                    return pageRepository.save(newPage);
-                });
-    }
-
-    @Transactional
-    private void processContent(Page page) {
-        String cleanText = lemmatizationService.cleanHtml(page.getContent());
-        Map<String, Integer> lemmas = lemmatizationService.getLemmas(cleanText);
-
-        lemmas.forEach((lemmaText, count) -> {
-            Lemma lemma = lemmaRepository.findByLemmaAndSite(lemmaText, page.getSite())
-                    .orElseGet(() -> {
-                        Lemma newLemma = new Lemma();
-                        newLemma.setLemma(lemmaText);
-                        newLemma.setSite(page.getSite());
-                        newLemma.setFrequency(0);
-                        return lemmaRepository.save(newLemma);
-                    });
-
-            lemma.setFrequency(lemma.getFrequency() + 1);
-            lemmaRepository.save(lemma);
+    /**
+     * Lemmatizes a fetched page of the site, stored under {@code path}. Fails when the response is
+     * an error or not HTML.
+     */
+    public ParsedPage parse(Site site, String path, PageFetcher.Response response) throws IOException {
+        if (response.statusCode() >= 400) {
+            throw new IOException("Page returned code " + response.statusCode());
+        }
+        if (response.outcome() == PageFetcher.Outcome.NOT_HTML) {
+            throw new IOException("Page is not HTML: " + response.header("Content-Type"));
+        }
 
-            Index index = new Index();
-            index.setPage(page);
-            index.setLemma(lemma);
-            index.setRank(count);
-            indexRepository.save(index);
-        });
+        Document doc = response.parse();
+        String body = new String(response.body(), doc.charset());
+        PageTextWriter text = new PageTextWriter(true);
+        TokenOffsets offsets = lemmatizationService.analyze(doc, text);
+        return new ParsedPage(site, path, response.statusCode(), body, offsets.counts(),
+                response.header("ETag"), response.header("Last-Modified"),
+                text.hash(), doc.title(), text.compressed(), offsets);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,20 @@
+package searchengine.services;
+
+import searchengine.services.crawler.UrlCanonicalizer;
+
+/**
+ * A page requested for indexing: its canonical URL, the path it is stored under, the same as a
+ * crawl would store, and the key that joins variants of the URL.
+ */
+public record PageTarget(String url, String path, String key) {
+    /**
+     * Returns null when the canonicalizer refuses the URL.
+     */
+    public static PageTarget of(UrlCanonicalizer canonicalizer, String url) {
+        String canonical = canonicalizer.canonicalize(url);
+        if (canonical == null) {
+            return null;
+        }
+        return new PageTarget(canonical, canonicalizer.path(canonical), canonicalizer.key(canonical));
+    }
+}
@@ -1,18 +1,37 @@
 package searchengine.services;
 
-import org.apache.lucene.analysis.TokenStream;
-import org.apache.lucene.analysis.morfologik.MorfologikAnalyzer;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import morfologik.stemming.Dictionary;
+import morfologik.stemming.DictionaryLookup;
+import morfologik.stemming.WordData;
+import morfologik.stemming.polish.PolishStemmer;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
 import org.springframework.stereotype.Service;
+import searchengine.config.SitesList;
+import searchengine.utils.lemmatization.LemmaCache;
+import searchengine.utils.lemmatization.LemmaCounter;
+import searchengine.utils.lemmatization.LemmaCounts;
+import searchengine.utils.lemmatization.LemmaFinder;
+import searchengine.utils.lemmatization.TokenOffsets;
 
-import jakarta.annotation.PreDestroy;
 import java.io.IOException;
+import java.io.Reader;
 import java.io.StringReader;
 import java.util.*;
 
+/**
+ * Splits text with Lucene's StandardTokenizer and maps every token to its lemmas through the
+ * Morfologik dictionary, the same chain {@code MorfologikAnalyzer} runs. Lemmas of each word form
+ * are kept in a {@link LemmaCache} shared by all threads, so the dictionary is only consulted the
+ * first time a form is seen.
+ */
 @Service
-public class RussianLemmatizer {
-    private final MorfologikAnalyzer analyzer;
+public class RussianLemmatizer implements LemmaFinder {
+    private static final String[] NO_LEMMAS = new String[0];
 
     private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
             "и", "в", "на", "с", "по", "за", "к", "до", "из", "у", "от", "о", "об",
@@ -20,42 +39,122 @@ public class RussianLemmatizer {
             "под", "при", "то", "это", "как", "так", "что", "вот", "вроде", "типа"
     ));
 
-    public RussianLemmatizer() {
-        this.analyzer = new MorfologikAnalyzer();
+    private final Dictionary dictionary = new PolishStemmer().getDictionary();
+    private final LemmaCache cache;
+    // Tokenizer and dictionary lookup are stateful, each thread gets its own
+    private final ThreadLocal<Analysis> analyses = ThreadLocal.withInitial(Analysis::new);
+
+    public RussianLemmatizer(SitesList settings, MeterRegistry registry) {
+        this.cache = new LemmaCache(settings.getLemmaCacheSize());
+        FunctionCounter.builder("lemmatizer.cache.requests", cache, LemmaCache::hits)
+                .tag("result", "hit").register(registry);
+        FunctionCounter.builder("lemmatizer.cache.requests", cache, LemmaCache::misses)
+                .tag("result", "miss").register(registry);
+        FunctionCounter.builder("lemmatizer.cache.evictions", cache, LemmaCache::evictions).register(registry);
+        Gauge.builder("lemmatizer.cache.size", cache, LemmaCache::size).register(registry);
     }
 
-    public Map<String, Integer> getLemmas(String text) {
-        Map<String, Integer> lemmas = new HashMap<>();
+    /**
+     * Counts lemmas into a primitive table; the strings are the cached lemma instances, so
+     * counting allocates nothing per token.
+     */
+    @Override
+    public LemmaCounts collectLemmas(String text) {
         if (text == null || text.isBlank()) {
-            return lemmas;
+            return LemmaCounts.EMPTY;
         }
 
-        text = text.toLowerCase();
-
-        try (TokenStream tokenStream = analyzer.tokenStream(null, new StringReader(text))) {
-            tokenStream.reset();
-            CharTermAttribute attribute = tokenStream.addAttribute(CharTermAttribute.class);
+        LemmaCounter counter = new LemmaCounter();
+        analyses.get().run(new StringReader(text), (lemma, start, end) -> counter.add(lemma));
+        return counter.toCounts();
+    }
 
-            while (tokenStream.incrementToken()) {
-                String lemma = attribute.toString();
-                if (lemma.length() > 2 && !STOP_WORDS.contains(lemma)) {
-                    lemmas.put(lemma, lemmas.getOrDefault(lemma, 0) + 1);
-                }
-            }
-            tokenStream.end();
-        } catch (IOException e) {
-            throw new RuntimeException("Ошибка лемматизации", e);
-        }
+    public Map<String, Integer> getLemmas(String text) {
+        return collectLemmas(text).toMap();
+    }
 
-        return lemmas;
+    /**
+     * Lemmatizes streamed text keeping the character offsets of every token in it.
+     */
+    public TokenOffsets analyze(Reader text) {
+        TokenOffsets.Builder offsets = new TokenOffsets.Builder();
+        analyses.get().run(text, offsets::add);
+        return offsets.build();
     }
 
     public List<String> getLemmaList(String text) {
-        return new ArrayList<>(getLemmas(text).keySet());
+        return Arrays.asList(collectLemmas(text).lemmas());
     }
 
-    @PreDestroy
+    /**
+     * Releases the tokenizer of the calling thread.
+     */
+    @Override
     public void close() {
-        analyzer.close();
+        analyses.remove();
+    }
+
+    interface LemmaConsumer {
+        void accept(String lemma, int start, int end);
+    }
+
+    private class Analysis {
+        private final StandardTokenizer tokenizer = new StandardTokenizer();
+        private final CharTermAttribute term = tokenizer.addAttribute(CharTermAttribute.class);
+        private final OffsetAttribute offset = tokenizer.addAttribute(OffsetAttribute.class);
+        private final DictionaryLookup lookup = new DictionaryLookup(dictionary);
+        private final LemmaCache.Probe probe = new LemmaCache.Probe();
+
+        private void run(Reader text, LemmaConsumer consumer) {
+            try {
+                tokenizer.setReader(text);
+                tokenizer.reset();
+                while (tokenizer.incrementToken()) {
+                    // Tokens are lower-cased in place, which keeps offsets aligned with the original text
+                    char[] buffer = term.buffer();
+                    for (int i = 0; i < term.length(); i++) {
+                        buffer[i] = Character.toLowerCase(buffer[i]);
+                    }
+                    String[] lemmas = lemmas(probe.set(buffer, term.length()));
+                    for (String lemma : lemmas) {
+                        consumer.accept(lemma, offset.startOffset(), offset.endOffset());
+                    }
+                }
+                tokenizer.end();
+            } catch (IOException e) {
+                throw new RuntimeException("Ошибка лемматизации", e);
+            } finally {
+                try {
+                    tokenizer.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        private String[] lemmas(LemmaCache.Probe form) {
+            String[] lemmas = cache.get(form);
+            if (lemmas == null) {
+                lemmas = lookup(term.toString());
+                cache.put(form, lemmas);
+            }
+            return lemmas;
+        }
+
+        /**
+         * Dictionary stems of the form, or the form itself when the dictionary does not know it,
+         * with short lemmas and stop words dropped.
+         */
+        private String[] lookup(String form) {
+            List<WordData> found = lookup.lookup(form);
+            List<String> stems = new ArrayList<>(Math.max(1, found.size()));
+            if (found.isEmpty()) {
+                stems.add(form);
+            } else {
+                // WordData instances are reused by the lookup, copy the stems out
+                found.forEach(wordData -> stems.add(wordData.getStem().toString()));
+            }
+            stems.removeIf(lemma -> lemma.length() <= 2 || STOP_WORDS.contains(lemma));
+            return stems.isEmpty() ? NO_LEMMAS : stems.toArray(NO_LEMMAS);
+        }
     }
-}
\ No newline at end of file
+}
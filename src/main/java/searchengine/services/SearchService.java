@@ -3,5 +3,8 @@ package searchengine.services;
 import searchengine.dto.statistics.SearchResponse;
 
 public interface SearchService {
-    SearchResponse search(String query, String siteUrl, int offset, int limit);
+    /**
+     * @param minMatch least number of query lemmas a page must contain, 0 requires all of them
+     */
+    SearchResponse search(String query, String siteUrl, int offset, int limit, int minMatch);
 }
\ No newline at end of file
@@ -10,6 +10,13 @@ import searchengine.dto.statistics.SearchData;
 import searchengine.dto.statistics.SearchResponse;
 import searchengine.model.*;
 import searchengine.repository.*;
+import searchengine.services.index.CorpusStatistics;
+import searchengine.services.index.InvertedIndex;
+import searchengine.services.index.LemmaDictionary;
+import searchengine.services.index.PageContentStore;
+import searchengine.services.index.PageText;
+import searchengine.services.index.ScoredPages;
+import searchengine.services.index.SearchResultCache;
 
 import java.util.*;
 import java.util.regex.Pattern;
@@ -20,13 +27,18 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class SearchServiceImpl implements SearchService {
     private final PageRepository pageRepository;
-    private final LemmaRepository lemmaRepository;
+    private final SiteLemmaRepository siteLemmaRepository;
     private final IndexRepository indexRepository;
     private final LemmatizationService lemmatizationService;
     private final SiteRepository siteRepository;
+    private final InvertedIndex invertedIndex;
+    private final LemmaDictionary lemmaDictionary;
+    private final PageContentStore pageContentStore;
+    private final SnippetBuilder snippetBuilder;
+    private final SearchResultCache searchResultCache;
 
     @Override
-    public SearchResponse search(String query, String siteUrl, int offset, int limit) {
+    public SearchResponse search(String query, String siteUrl, int offset, int limit, int minMatch) {
         log.info("Starting search for query: '{}' on site: {}", query, siteUrl);
         SearchResponse response = new SearchResponse();
 
@@ -52,26 +64,21 @@ public class SearchServiceImpl implements SearchService {
                     siteRepository.findByUrl(siteUrl).orElse(null) : null;
             log.debug("Site for search: {}", site != null ? site.getUrl() : "all sites");
 
-            List<Lemma> filteredLemmas = filterAndSortLemmas(queryLemmas, site);
-            log.debug("Filtered lemmas: {}",
-                    filteredLemmas.stream().map(Lemma::getLemma).collect(Collectors.toList()));
-
-            if (filteredLemmas.isEmpty()) {
-                log.info("No relevant lemmas found after filtering");
-                response.setResult(true);
-                response.setCount(0);
-                response.setData(Collections.emptyList());
-                return response;
+            // Only the pages up to the end of the requested window are ranked
+            int k = (int) Math.max(1, Math.min(Integer.MAX_VALUE, (long) Math.max(0, offset) + Math.max(0, limit)));
+            SearchResultCache.Key cacheKey = SearchResultCache.key(queryLemmas, site, minMatch);
+            ScoredPages foundPages = searchResultCache.get(cacheKey, k);
+            if (foundPages == null) {
+                foundPages = rankPages(cacheKey, queryLemmas, site, minMatch, k);
+            } else {
+                log.debug("Serving {} ranked pages from cache", foundPages.size());
             }
 
-            List<Page> foundPages = findPagesContainingAllLemmas(filteredLemmas);
-            log.debug("Found {} pages containing all lemmas", foundPages.size());
-
             List<SearchData> searchData = buildSearchResults(foundPages, queryLemmas, offset, limit);
             log.info("Search completed successfully, found {} results", searchData.size());
 
             response.setResult(true);
-            response.setCount(foundPages.size());
+            response.setCount(foundPages.total());
             response.setData(searchData);
         } catch (Exception e) {
             log.error("Search error", e);
@@ -81,83 +88,137 @@ public class SearchServiceImpl implements SearchService {
         return response;
     }
 
-    private List<Lemma> filterAndSortLemmas(List<String> lemmas, Site site) {
-        List<Lemma> result = new ArrayList<>();
-
-        for (String lemma : lemmas) {
-            List<Lemma> foundLemmas = site != null ?
-                    lemmaRepository.findByLemmaInAndSite(List.of(lemma), site) :
-                    lemmaRepository.findByLemma(lemma);
-
-            foundLemmas.forEach(l -> {
-                long totalPages = pageRepository.countBySite(l.getSite());
-                if (totalPages > 0) {
-                    double frequencyRatio = (double) l.getFrequency() / totalPages;
-                    if (frequencyRatio < 0.8) {
-                        result.add(l);
-                    }
-                }
-            });
+    /**
+     * Ranks pages matching the query, ordered by descending relevance, and caches them. Pages must
+     * contain all query lemmas, or at least {@code minMatch} of them when it is positive. The
+     * in-memory index returns the top {@code k} pages, the database fallback every page.
+     */
+    private ScoredPages rankPages(SearchResultCache.Key cacheKey, List<String> queryLemmas, Site site,
+                                  int minMatch, int k) {
+        long generation = searchResultCache.generation(cacheKey.siteId());
+        CorpusStatistics statistics = statistics(lemmaDictionary.find(queryLemmas).values(), site);
+        List<Integer> matchedLemmas = new ArrayList<>(statistics.documentFrequencies().keySet());
+        List<Integer> filteredLemmas = filterAndSortLemmas(statistics);
+        log.debug("Filtered lemma ids: {}", filteredLemmas);
+
+        if (filteredLemmas.isEmpty()) {
+            log.info("No relevant lemmas found after filtering");
+            searchResultCache.put(cacheKey, ScoredPages.EMPTY, true, generation);
+            return ScoredPages.EMPTY;
         }
 
-        return result.stream()
-                .sorted(Comparator.comparingInt(Lemma::getFrequency))
-                .collect(Collectors.toList());
+        List<Integer> optionalLemmas = new ArrayList<>(matchedLemmas);
+        optionalLemmas.removeAll(filteredLemmas);
+        int requiredMatches = minMatch > 0 ? Math.min(minMatch, filteredLemmas.size()) : filteredLemmas.size();
+
+        if (invertedIndex.isReady()) {
+            ScoredPages foundPages = invertedIndex.search(cacheKey.siteId(), toArray(filteredLemmas),
+                    toArray(optionalLemmas), requiredMatches, k);
+            log.debug("Found {} pages matching {} of {} lemmas",
+                    foundPages.total(), requiredMatches, filteredLemmas.size());
+            // Pruning only starts once k pages are collected, a shorter result holds every match
+            boolean exhaustive = foundPages.size() < k;
+            searchResultCache.put(cacheKey, foundPages, exhaustive, generation);
+            return foundPages;
+        }
+
+        // The in-memory index is still loading, rank in the database with a single query
+        ScoredPages foundPages = rankInDatabase(site, filteredLemmas, matchedLemmas, requiredMatches);
+        log.debug("Found {} pages matching {} of {} lemmas",
+                foundPages.total(), requiredMatches, filteredLemmas.size());
+        searchResultCache.put(cacheKey, foundPages, true, generation);
+        return foundPages;
     }
 
-    private List<Page> findPagesContainingAllLemmas(List<Lemma> lemmas) {
-        if (lemmas.isEmpty()) {
-            return Collections.emptyList();
-        }
+    private static int[] toArray(List<Integer> lemmaIds) {
+        return lemmaIds.stream().mapToInt(Integer::intValue).toArray();
+    }
 
-        List<Page> pages = indexRepository.findPagesByLemma(lemmas.get(0));
-        log.debug("Initial pages for lemma {}: {}", lemmas.get(0).getLemma(), pages.size());
+    /**
+     * Statistics of the searched sites for the query lemmas. They come from the in-memory index
+     * snapshot, from site_lemma and page counts only while the index is loading.
+     */
+    private CorpusStatistics statistics(Collection<Integer> lemmaIds, Site site) {
+        if (invertedIndex.isReady()) {
+            return invertedIndex.statistics(site != null ? site.getId() : null, lemmaIds);
+        }
 
-        for (int i = 1; i < lemmas.size() && !pages.isEmpty(); i++) {
-            pages = indexRepository.findPagesByLemmaAndPageIn(lemmas.get(i), pages);
-            log.debug("Pages after filtering by lemma {}: {}",
-                    lemmas.get(i).getLemma(), pages.size());
+        Map<Integer, Long> frequencies = new HashMap<>();
+        if (!lemmaIds.isEmpty()) {
+            List<Object[]> rows = site != null
+                    ? siteLemmaRepository.findFrequencies(lemmaIds, site.getId())
+                    : siteLemmaRepository.sumFrequencies(lemmaIds);
+            for (Object[] row : rows) {
+                long frequency = ((Number) row[1]).longValue();
+                if (frequency > 0) {
+                    frequencies.put((Integer) row[0], frequency);
+                }
+            }
         }
+        long pages = site != null ? pageRepository.countBySite(site) : pageRepository.count();
+        return new CorpusStatistics(pages, 0, frequencies);
+    }
+
+    /**
+     * Drops lemmas found on 80% or more of the searched pages and orders the rest from the rarest.
+     */
+    private static List<Integer> filterAndSortLemmas(CorpusStatistics statistics) {
+        long totalPages = statistics.pages();
+        return statistics.documentFrequencies().entrySet().stream()
+                .filter(e -> totalPages > 0 && (double) e.getValue() / totalPages < 0.8)
+                .sorted(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
 
-        return pages;
+    private ScoredPages rankInDatabase(Site site, List<Integer> requiredLemmas, List<Integer> scoringLemmas,
+                                       int requiredMatches) {
+        List<Object[]> rows = site != null
+                ? indexRepository.rankPagesOfSite(site.getId(), requiredLemmas, scoringLemmas, requiredMatches)
+                : indexRepository.rankPages(requiredLemmas, scoringLemmas, requiredMatches);
+
+        int[] pageIds = new int[rows.size()];
+        double[] scores = new double[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            pageIds[i] = (Integer) rows.get(i)[0];
+            scores[i] = ((Number) rows.get(i)[1]).doubleValue();
+        }
+        return new ScoredPages(pageIds, scores, pageIds.length);
     }
 
-    private List<SearchData> buildSearchResults(List<Page> pages,
+    /**
+     * Renders the offset/limit window of ranked pages, only those pages are loaded from the database.
+     */
+    private List<SearchData> buildSearchResults(ScoredPages ranked,
                                                 List<String> queryLemmas,
                                                 int offset,
                                                 int limit) {
-        if (pages.isEmpty()) {
+        if (ranked.size() == 0 || offset >= ranked.size()) {
             return Collections.emptyList();
         }
 
-        // Calculate relevance
-        Map<Page, Double> relevanceMap = new HashMap<>();
-        double maxRelevance = 0;
-
-        for (Page page : pages) {
-            Double relevance = indexRepository.sumRankByPageAndLemmas(page, queryLemmas);
-            if (relevance != null && relevance > 0) {
-                relevanceMap.put(page, relevance);
-                if (relevance > maxRelevance) {
-                    maxRelevance = relevance;
-                }
+        double maxRelevance = ranked.scores()[0];
+        int from = Math.max(0, offset);
+        int to = (int) Math.min(ranked.size(), (long) from + limit);
+
+        List<Integer> windowIds = Arrays.stream(ranked.pageIds(), from, to).boxed().toList();
+        Map<Integer, Page> loaded = pageRepository.findAllById(windowIds).stream()
+                .collect(Collectors.toMap(Page::getId, p -> p));
+        Map<Integer, PageText> texts = pageContentStore.loadTexts(windowIds);
+
+        List<SearchData> result = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            Page page = loaded.get(ranked.pageIds()[i]);
+            if (page != null) {
+                result.add(createSearchData(page, texts.get(page.getId()), queryLemmas,
+                        ranked.scores()[i], maxRelevance));
             }
         }
-
-        // Sort and paginate results
-        double finalMaxRelevance = maxRelevance;
-        return pages.stream()
-                .filter(relevanceMap::containsKey)
-                .sorted((p1, p2) -> Double.compare(
-                        relevanceMap.get(p2),
-                        relevanceMap.get(p1)))
-                .skip(offset)
-                .limit(limit)
-                .map(page -> createSearchData(page, queryLemmas, relevanceMap.get(page), finalMaxRelevance))
-                .collect(Collectors.toList());
+        return result;
     }
 
     private SearchData createSearchData(Page page,
+                                        PageText text,
                                         List<String> queryLemmas,
                                         double relevance,
                                         double maxRelevance) {
@@ -165,8 +226,15 @@ public class SearchServiceImpl implements SearchService {
         data.setSite(page.getSite().getUrl());
         data.setSiteName(page.getSite().getName());
         data.setUri(page.getPath());
-        data.setTitle(extractTitle(page.getContent()));
-        data.setSnippet(generateSnippet(page.getContent(), queryLemmas));
+        if (text != null) {
+            data.setTitle(page.getTitle() != null && !page.getTitle().isBlank() ? page.getTitle() : "Без названия");
+            data.setSnippet(snippetBuilder.build(text.text(), text.offsets(), queryLemmas));
+        } else {
+            // Pages indexed before text and offsets were stored
+            String html = pageContentStore.load(page.getId()).orElse("");
+            data.setTitle(extractTitle(html));
+            data.setSnippet(generateSnippet(html, queryLemmas));
+        }
         data.setRelevance((float) (relevance / maxRelevance));
         return data;
     }
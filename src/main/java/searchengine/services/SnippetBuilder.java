@@ -0,0 +1,120 @@
+package searchengine.services;
+
+import org.springframework.stereotype.Component;
+import searchengine.utils.lemmatization.TokenOffsets;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Builds search snippets from the plain text and token offsets stored at index time. The window
+ * covering the most distinct query lemmas is cut out of the text and the exact word forms found
+ * there are highlighted, so no HTML is parsed at query time.
+ */
+@Component
+public class SnippetBuilder {
+    private static final int SNIPPET_LENGTH = 250;
+    private static final String ELLIPSIS = "...";
+
+    public String build(String text, TokenOffsets offsets, Collection<String> queryLemmas) {
+        List<int[]> tokens = new ArrayList<>();
+        int lemmaIndex = 0;
+        for (String lemma : queryLemmas) {
+            int[] pairs = offsets.get(lemma);
+            if (pairs != null) {
+                for (int i = 0; i < pairs.length; i += 2) {
+                    tokens.add(new int[]{pairs[i], pairs[i + 1], lemmaIndex});
+                }
+            }
+            lemmaIndex++;
+        }
+
+        if (tokens.isEmpty()) {
+            return render(text, 0, Math.min(text.length(), SNIPPET_LENGTH), List.of());
+        }
+        tokens.sort((a, b) -> Integer.compare(a[0], b[0]));
+
+        // Slide a window over the tokens and keep the one with the most distinct lemmas
+        int[] lemmaHits = new int[lemmaIndex];
+        int distinct = 0;
+        int bestFrom = 0;
+        int bestTo = 0;
+        int bestDistinct = 0;
+        int from = 0;
+        for (int to = 0; to < tokens.size(); to++) {
+            if (lemmaHits[tokens.get(to)[2]]++ == 0) {
+                distinct++;
+            }
+            while (tokens.get(to)[1] - tokens.get(from)[0] > SNIPPET_LENGTH) {
+                if (--lemmaHits[tokens.get(from)[2]] == 0) {
+                    distinct--;
+                }
+                from++;
+            }
+            if (distinct > bestDistinct) {
+                bestDistinct = distinct;
+                bestFrom = from;
+                bestTo = to;
+            }
+        }
+
+        int matchStart = tokens.get(bestFrom)[0];
+        int matchEnd = tokens.get(bestTo)[1];
+        int padding = (SNIPPET_LENGTH - (matchEnd - matchStart)) / 2;
+        int start = Math.min(Math.min(matchStart, text.length()), wordStart(text, Math.max(0, matchStart - padding)));
+        int end = Math.min(text.length(), Math.max(matchEnd, wordEnd(text, Math.min(text.length(), start + SNIPPET_LENGTH))));
+        return render(text, start, end, tokens);
+    }
+
+    private static String render(String text, int start, int end, List<int[]> tokens) {
+        StringBuilder snippet = new StringBuilder(end - start + 32);
+        if (start > 0) {
+            snippet.append(ELLIPSIS);
+        }
+        int position = start;
+        for (int[] token : tokens) {
+            if (token[0] < position || token[1] > end) {
+                continue;
+            }
+            escape(text, position, token[0], snippet);
+            snippet.append("<b>");
+            escape(text, token[0], token[1], snippet);
+            snippet.append("</b>");
+            position = token[1];
+        }
+        escape(text, position, end, snippet);
+        if (end < text.length()) {
+            snippet.append(ELLIPSIS);
+        }
+        return snippet.toString();
+    }
+
+    private static void escape(String text, int from, int to, StringBuilder out) {
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<' -> out.append("&lt;");
+                case '>' -> out.append("&gt;");
+                case '&' -> out.append("&amp;");
+                default -> out.append(c);
+            }
+        }
+    }
+
+    private static int wordStart(String text, int index) {
+        if (index == 0) {
+            return 0;
+        }
+        int space = text.indexOf(' ', index);
+        return space < 0 || space - index > 20 ? index : space + 1;
+    }
+
+    private static int wordEnd(String text, int index) {
+        if (index >= text.length()) {
+            return text.length();
+        }
+        int space = text.lastIndexOf(' ', index);
+        return space < 0 || index - space > 20 ? index : space;
+    }
+}
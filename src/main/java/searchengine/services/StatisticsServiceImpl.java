@@ -9,6 +9,7 @@ import searchengine.dto.statistics.TotalStatistics;
 import searchengine.model.Site;
 import searchengine.repository.LemmaRepository;
 import searchengine.repository.PageRepository;
+import searchengine.repository.SiteLemmaRepository;
 import searchengine.repository.SiteRepository;
 
 import java.time.ZoneId;
@@ -22,6 +23,7 @@ public class StatisticsServiceImpl implements StatisticsService {
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
     private final LemmaRepository lemmaRepository;
+    private final SiteLemmaRepository siteLemmaRepository;
     private final IndexingService indexingService;
 
     @Override
@@ -43,7 +45,7 @@ public class StatisticsServiceImpl implements StatisticsService {
             item.setStatusTime(site.getStatusTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
             item.setError(site.getLastError());
             item.setPages((int) pageRepository.countBySite(site));
-            item.setLemmas(lemmaRepository.countBySite(site));
+            item.setLemmas(siteLemmaRepository.countBySite(site.getId()));
             detailed.add(item);
         }
 
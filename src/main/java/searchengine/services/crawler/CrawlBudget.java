@@ -0,0 +1,7 @@
+package searchengine.services.crawler;
+
+/**
+ * Limits of one site's crawl: link distance from the main page and number of pages fetched.
+ */
+public record CrawlBudget(int maxDepth, int maxPages) {
+}
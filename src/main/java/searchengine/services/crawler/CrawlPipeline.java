@@ -0,0 +1,602 @@
+package searchengine.services.crawler;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.springframework.stereotype.Component;
+import searchengine.config.SitesList;
+import searchengine.model.Site;
+import searchengine.repository.PageRepository;
+import searchengine.repository.SiteRepository;
+import searchengine.services.LemmatizationService;
+import searchengine.services.index.PageContentStore;
+import searchengine.services.index.PageWriter;
+import searchengine.services.index.ParsedPage;
+import searchengine.utils.PageTextWriter;
+import searchengine.utils.lemmatization.TokenOffsets;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToLongFunction;
+
+/**
+ * Site crawler split into three stages connected by bounded queues:
+ * fetch (many I/O-bound threads), parse and lemmatize (one thread per core)
+ * and persist (a single writer storing pages in batches).
+ * A full queue blocks the stage in front of it, which caps the number of documents in memory.
+ * Fetches are paced per host by {@link HostScheduler}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CrawlPipeline {
+    private static final int MAX_THROTTLED_RETRIES = 3;
+
+    private final SitesList sites;
+    private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
+    private final LemmatizationService lemmatizationService;
+    private final PageWriter pageWriter;
+    private final PageContentStore pageContentStore;
+    private final HostScheduler hostScheduler;
+    private final FrontierStore frontierStore;
+    private final RobotsTxtCache robotsTxtCache;
+    private final PageFetcher pageFetcher;
+    private final SitemapReader sitemapReader;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<Integer, SiteCrawl> crawls = new ConcurrentHashMap<>();
+    private ExecutorService fetchPool;
+    private ExecutorService parsePool;
+    private ExecutorService persistPool;
+    private BlockingQueue<FetchedPage> parseQueue;
+    private BlockingQueue<PersistTask> persistQueue;
+    private volatile boolean running = false;
+
+    /**
+     * Crawls the sites. In incremental mode pages already stored are requested conditionally,
+     * unchanged pages are not re-indexed and pages that were not reached are deleted at the end.
+     */
+    public synchronized void start(List<Site> sitesToCrawl, boolean incremental) {
+        if (running || sitesToCrawl.isEmpty()) {
+            return;
+        }
+
+        startPools();
+        for (Site site : sitesToCrawl) {
+            Map<String, KnownPage> knownPages = incremental ? loadKnownPages(site) : Map.of();
+            SiteCrawl crawl = newCrawl(site, knownPages, frontierStore.create(site));
+            crawls.put(site.getId(), crawl);
+            registerMeters(site);
+            // Held until the sitemap seeds are in, so a quick main page cannot finish the crawl first
+            crawl.hold();
+            submit(crawl, site.getUrl(), 0);
+            seedFromSitemaps(crawl);
+        }
+    }
+
+    /**
+     * Continues interrupted crawls from their frontier logs. URLs that already left the pipeline
+     * are not fetched again, stored pages are kept.
+     */
+    public synchronized void resume(List<Site> sitesToResume) {
+        if (running || sitesToResume.isEmpty()) {
+            return;
+        }
+
+        startPools();
+        List<SiteCrawl> empty = new ArrayList<>();
+        for (Site site : sitesToResume) {
+            Optional<FrontierStore.Restored> restored = frontierStore.restore(site);
+            if (restored.isEmpty()) {
+                continue;
+            }
+            SiteCrawl crawl = newCrawl(site, Map.of(), restored.get().log());
+            crawls.put(site.getId(), crawl);
+            registerMeters(site);
+            int pending = crawl.restore(restored.get().state());
+            log.info("Resuming {}: {} URLs done, {} pending",
+                    site.getUrl(), restored.get().state().finished().size(), pending);
+            if (pending == 0) {
+                empty.add(crawl);
+            }
+            for (int i = 0; i < pending; i++) {
+                scheduleFetch(crawl);
+            }
+        }
+        empty.forEach(this::finish);
+    }
+
+    private SiteCrawl newCrawl(Site site, Map<String, KnownPage> knownPages, FrontierLog frontierLog) {
+        UrlCanonicalizer canonicalizer = new UrlCanonicalizer(site.getUrl(), sites.rulesFor(site.getUrl()));
+        return new SiteCrawl(site, knownPages, frontierLog, canonicalizer,
+                new CrawlBudget(sites.getMaxDepth(), sites.getMaxPagesPerSite()));
+    }
+
+    /**
+     * Visited set size and memory of the site's running crawl, zero between crawls. Registering
+     * again on the next crawl returns the existing gauges.
+     */
+    private void registerMeters(Site site) {
+        Integer siteId = site.getId();
+        Gauge.builder("crawler.visited.urls", crawls, running -> visited(running, siteId, VisitedSet::size))
+                .tag("site", site.getUrl()).register(meterRegistry);
+        Gauge.builder("crawler.visited.bytes", crawls, running -> visited(running, siteId, VisitedSet::memoryBytes))
+                .tag("site", site.getUrl()).register(meterRegistry);
+    }
+
+    private static double visited(Map<Integer, SiteCrawl> running, Integer siteId,
+                                  ToLongFunction<VisitedSet> metric) {
+        SiteCrawl crawl = running.get(siteId);
+        return crawl != null ? metric.applyAsLong(crawl.getVisited()) : 0;
+    }
+
+    private void startPools() {
+        int parseThreads = sites.getParseThreads() > 0
+                ? sites.getParseThreads()
+                : Runtime.getRuntime().availableProcessors();
+        parseQueue = new ArrayBlockingQueue<>(sites.getPipelineQueueCapacity());
+        persistQueue = new ArrayBlockingQueue<>(sites.getPipelineQueueCapacity());
+        fetchPool = Executors.newFixedThreadPool(sites.getFetchThreads(), threadFactory("crawl-fetch"));
+        parsePool = Executors.newFixedThreadPool(parseThreads, threadFactory("crawl-parse"));
+        persistPool = Executors.newSingleThreadExecutor(threadFactory("crawl-persist"));
+        running = true;
+
+        for (int i = 0; i < parseThreads; i++) {
+            parsePool.execute(this::parseLoop);
+        }
+        persistPool.execute(this::persistLoop);
+    }
+
+    private Map<String, KnownPage> loadKnownPages(Site site) {
+        Map<String, KnownPage> knownPages = new HashMap<>();
+        for (Object[] row : pageRepository.findPageStatesBySite(site)) {
+            knownPages.put((String) row[1],
+                    new KnownPage((Integer) row[0], (String) row[2], (String) row[3], (String) row[4]));
+        }
+        log.info("Incremental crawl of {}: {} pages already stored", site.getUrl(), knownPages.size());
+        return knownPages;
+    }
+
+    public synchronized boolean stop() {
+        if (!running) {
+            return false;
+        }
+
+        crawls.values().forEach(crawl -> {
+            crawl.stop();
+            hostScheduler.cancel(crawl);
+        });
+        shutdownPools();
+        try {
+            persistPool.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Logs are kept, the crawl can be resumed from them
+        crawls.values().forEach(crawl -> crawl.getFrontierLog().close());
+        crawls.clear();
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    private boolean submit(SiteCrawl crawl, String url, int depth) {
+        if (crawl.offer(url, depth)) {
+            scheduleFetch(crawl);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reads the site's sitemaps on the fetch pool and queues their URLs next to the links of the
+     * main page, then releases the crawl's {@link SiteCrawl#hold()}.
+     */
+    private void seedFromSitemaps(SiteCrawl crawl) {
+        if (!sites.isUseSitemaps()) {
+            crawl.release();
+            return;
+        }
+        try {
+            fetchPool.execute(() -> {
+                try {
+                    seed(crawl);
+                } catch (Exception e) {
+                    log.warn("Could not seed {} from sitemaps: {}", crawl.getRootUrl(), e.getMessage());
+                } finally {
+                    if (crawl.release()) {
+                        finish(crawl);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            crawl.release();
+        }
+    }
+
+    private void seed(SiteCrawl crawl) {
+        UrlCanonicalizer canonicalizer = crawl.getCanonicalizer();
+        RobotsRules robots = robotsTxtCache.rules(canonicalizer.getOrigin());
+        RobotsRules allowed = canonicalizer.isRespectRobots() ? robots : RobotsRules.ALLOW_ALL;
+        List<String> sitemaps = robots.getSitemaps().isEmpty()
+                ? List.of(canonicalizer.getOrigin() + "/sitemap.xml")
+                : robots.getSitemaps();
+        List<SitemapReader.Entry> entries = sitemapReader.read(sitemaps, url -> {
+            String canonical = canonicalizer.canonicalize(url);
+            return canonical != null && allowed.allows(canonicalizer.requestPath(canonical)) ? canonical : null;
+        }, crawl.getBudget().maxPages());
+
+        int queued = 0;
+        int unchanged = 0;
+        for (SitemapReader.Entry entry : entries) {
+            if (crawl.isStopped() || crawl.isBudgetReached()) {
+                break;
+            }
+            if (isUnchanged(crawl, entry)) {
+                // Counted as reached, so an incremental crawl keeps the stored page
+                if (crawl.claim(entry.url())) {
+                    crawl.getSeenPaths().claim(crawl.path(entry.url()));
+                    unchanged++;
+                }
+            } else if (submit(crawl, entry.url(), 1)) {
+                queued++;
+            }
+        }
+        log.info("Sitemaps of {}: {} URLs, {} queued, {} unchanged since the last crawl",
+                crawl.getRootUrl(), entries.size(), queued, unchanged);
+    }
+
+    /**
+     * Whether the sitemap dates the page no later than the Last-Modified stored for it.
+     */
+    private static boolean isUnchanged(SiteCrawl crawl, SitemapReader.Entry entry) {
+        KnownPage known = crawl.getKnownPages().get(crawl.path(entry.url()));
+        if (known == null || known.lastModified() == null || entry.lastModified() == null) {
+            return false;
+        }
+        try {
+            Instant stored = ZonedDateTime.parse(known.lastModified(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            return !entry.lastModified().isAfter(stored);
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private void scheduleFetch(SiteCrawl crawl) {
+        hostScheduler.submit(crawl.getHost(), crawl, slot -> {
+            try {
+                fetchPool.execute(() -> fetch(crawl, slot));
+            } catch (RejectedExecutionException e) {
+                slot.cancel();
+            }
+        });
+    }
+
+    // Stage 1: network I/O
+
+    private void fetch(SiteCrawl crawl, HostScheduler.Slot slot) {
+        FrontierEntry entry = crawl.next();
+        if (entry == null || crawl.isStopped()) {
+            slot.cancel();
+            if (entry == null && crawl.isBudgetReached()) {
+                skipOverBudget(crawl);
+            }
+            return;
+        }
+
+        String url = entry.url();
+        String path = crawl.path(url);
+        KnownPage known = crawl.getKnownPages().get(path);
+        long started = System.currentTimeMillis();
+        try {
+            Map<String, String> headers = new HashMap<>();
+            if (known != null && known.etag() != null) {
+                headers.put("If-None-Match", known.etag());
+            }
+            if (known != null && known.lastModified() != null) {
+                headers.put("If-Modified-Since", known.lastModified());
+            }
+            PageFetcher.Response response = pageFetcher.fetchPage(url, headers);
+            slot.done(response.statusCode(), System.currentTimeMillis() - started, response.header("Retry-After"));
+
+            int code = response.statusCode();
+            if ((code == 429 || code == 503) && crawl.retry(entry, MAX_THROTTLED_RETRIES)) {
+                log.debug("Host throttled {}, retrying later", url);
+                scheduleFetch(crawl);
+                return;
+            }
+
+            if (response.statusCode() >= 400) {
+                log.warn("Skipping page with error code: {} - {}", response.statusCode(), url);
+                if (url.equals(crawl.getRootUrl())) {
+                    fail(crawl, "Main page returned code " + response.statusCode());
+                }
+                completeUrl(crawl, url);
+                return;
+            }
+
+            if (response.outcome() == PageFetcher.Outcome.NOT_HTML) {
+                log.debug("Skipping {}, content type {}", url, response.header("Content-Type"));
+                completeUrl(crawl, url);
+                return;
+            }
+
+            String pageUrl = redirectTarget(crawl, url, response.url());
+            if (pageUrl == null) {
+                completeUrl(crawl, url);
+                return;
+            }
+
+            crawl.getSeenPaths().claim(crawl.path(pageUrl));
+            byte[] body = response.body();
+            String charset = response.charset();
+            if (code == 304 && known != null) {
+                body = pageContentStore.load(known.id()).orElse("").getBytes(StandardCharsets.UTF_8);
+                charset = StandardCharsets.UTF_8.name();
+            }
+            parseQueue.put(new FetchedPage(crawl, url, pageUrl, entry.depth(), code, body, charset,
+                    response.header("ETag"), response.header("Last-Modified")));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            slot.failed(System.currentTimeMillis() - started);
+            log.error("Error indexing URL: {} | {}", url, e.getMessage());
+            if (url.equals(crawl.getRootUrl())) {
+                fail(crawl, "Indexing error: " + e.getMessage());
+            }
+            completeUrl(crawl, url);
+        } finally {
+            slot.cancel();
+        }
+    }
+
+    /**
+     * Canonical URL of the page a fetch ended on, or {@code null} when a redirect led off the
+     * crawl rules or to a page that is already visited.
+     */
+    private String redirectTarget(SiteCrawl crawl, String url, String finalUrl) {
+        if (finalUrl.equals(url)) {
+            return url;
+        }
+        UrlCanonicalizer canonicalizer = crawl.getCanonicalizer();
+        String target = canonicalizer.canonicalize(finalUrl);
+        if (target == null) {
+            log.debug("Redirect from {} leaves the site rules: {}", url, finalUrl);
+            return null;
+        }
+        String source = canonicalizer.canonicalize(url);
+        boolean sameKey = source != null && canonicalizer.key(source).equals(canonicalizer.key(target));
+        if (!sameKey && !crawl.claim(target)) {
+            log.debug("Redirect from {} leads to visited {}", url, target);
+            return null;
+        }
+        return target;
+    }
+
+    /**
+     * Completes the URLs still waiting once the site's page budget is spent, so the crawl finishes
+     * with the pages in flight. Queued fetches are dropped first: a URL offered meanwhile either
+     * gets drained here or keeps its own fetch, which lands here again.
+     */
+    private void skipOverBudget(SiteCrawl crawl) {
+        hostScheduler.cancel(crawl);
+        List<FrontierEntry> skipped = crawl.dropOverBudget();
+        if (skipped.isEmpty()) {
+            return;
+        }
+        log.info("Site {} reached its budget of {} pages, {} URLs left unvisited",
+                crawl.getRootUrl(), crawl.getBudget().maxPages(), skipped.size());
+        skipped.forEach(skippedEntry -> completeUrl(crawl, skippedEntry.url()));
+    }
+
+    // Stage 2: parsing, link discovery and lemmatization
+
+    private void parseLoop() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                parse(parseQueue.take());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void parse(FetchedPage fetched) throws InterruptedException {
+        SiteCrawl crawl = fetched.crawl();
+        ParsedPage page;
+        try {
+            // Parsed from the bytes so a charset named only in the page's meta tag is honoured
+            Document doc = Jsoup.parse(new ByteArrayInputStream(fetched.body()), fetched.charset(), fetched.pageUrl());
+            for (String childUrl : extractLinks(crawl, doc)) {
+                submit(crawl, childUrl, fetched.depth() + 1);
+            }
+
+            // A 304 is answered from the stored copy only to discover links
+            if (fetched.code() == 304) {
+                completeUrl(crawl, fetched.url());
+                return;
+            }
+
+            String path = crawl.path(fetched.pageUrl());
+            KnownPage known = crawl.getKnownPages().get(path);
+            // A hash-only pass over the text nodes is far cheaper than lemmatizing an unchanged page
+            if (known != null && lemmatizationService.contentHash(doc).equals(known.contentHash())) {
+                pageRepository.updateValidators(known.id(), fetched.etag(), fetched.lastModified());
+                completeUrl(crawl, fetched.url());
+                return;
+            }
+
+            PageTextWriter text = new PageTextWriter(true);
+            TokenOffsets offsets = lemmatizationService.analyze(doc, text);
+            String content = new String(fetched.body(), doc.charset());
+            page = new ParsedPage(crawl.getSite(), path, fetched.code(), content, offsets.counts(),
+                    fetched.etag(), fetched.lastModified(), text.hash(), doc.title(), text.compressed(), offsets);
+        } catch (Exception e) {
+            log.error("Error parsing URL: {} | {}", fetched.url(), e.getMessage());
+            completeUrl(crawl, fetched.url());
+            return;
+        }
+        persistQueue.put(new PersistTask(crawl, fetched.url(), page));
+    }
+
+    private Set<String> extractLinks(SiteCrawl crawl, Document doc) {
+        Set<String> newUrls = new HashSet<>();
+        if (crawl.isStopped()) {
+            return newUrls;
+        }
+
+        UrlCanonicalizer canonicalizer = crawl.getCanonicalizer();
+        RobotsRules robots = canonicalizer.isRespectRobots()
+                ? robotsTxtCache.rules(canonicalizer.getOrigin())
+                : RobotsRules.ALLOW_ALL;
+        for (Element link : doc.select("a[href]")) {
+            String childUrl = canonicalizer.canonicalize(link.absUrl("href"));
+
+            // Visited URLs are offered too, a link to a waiting URL raises its priority
+            if (childUrl != null && robots.allows(canonicalizer.requestPath(childUrl))) {
+                newUrls.add(childUrl);
+            }
+        }
+        return newUrls;
+    }
+
+    // Stage 3: persistence
+
+    private void persistLoop() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                List<PersistTask> batch = new ArrayList<>(sites.getPersistBatchSize());
+                batch.add(persistQueue.take());
+                persistQueue.drainTo(batch, sites.getPersistBatchSize() - 1);
+                persist(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * URLs are logged done only after their pages, lemmas and index rows commit. A batch that
+     * fails is not logged, so a resumed crawl fetches its pages again.
+     */
+    private void persist(List<PersistTask> batch) {
+        try {
+            pageWriter.write(batch.stream().map(PersistTask::page).toList());
+        } catch (Exception e) {
+            log.error("Error saving {} pages", batch.size(), e);
+            batch.forEach(task -> abandonUrl(task.crawl()));
+            return;
+        }
+        batch.stream().map(PersistTask::crawl).distinct().forEach(this::touch);
+        batch.forEach(task -> completeUrl(task.crawl(), task.url()));
+    }
+
+    // Site bookkeeping
+
+    private void completeUrl(SiteCrawl crawl, String url) {
+        if (crawl.complete(url)) {
+            finish(crawl);
+        }
+    }
+
+    // Finishes a URL without logging it done
+    private void abandonUrl(SiteCrawl crawl) {
+        if (crawl.release()) {
+            finish(crawl);
+        }
+    }
+
+    private void finish(SiteCrawl crawl) {
+        if (crawl.isStopped()) {
+            return;
+        }
+
+        Site site = crawl.getSite();
+        crawl.getFrontierLog().close();
+        frontierStore.delete(site);
+        if (crawl.isIncremental() && crawl.isTruncated()) {
+            log.info("Budget cut the crawl of {} short, stored pages not reached are kept", site.getUrl());
+        } else if (crawl.isIncremental()) {
+            List<Integer> disappeared = crawl.disappearedPageIds();
+            try {
+                pageWriter.deletePages(site, disappeared);
+                log.info("Removed {} pages that disappeared from {}", disappeared.size(), site.getUrl());
+            } catch (Exception e) {
+                log.error("Error removing disappeared pages of {}", site.getUrl(), e);
+            }
+        }
+        synchronized (crawl) {
+            if (site.getStatus() == Site.Status.INDEXING) {
+                site.setStatus(Site.Status.INDEXED);
+            }
+            site.setStatusTime(LocalDateTime.now());
+            siteRepository.save(site);
+        }
+        log.info("Site {} indexed, {} URLs visited, visited set {} KB",
+                site.getUrl(), crawl.getVisited().size(), crawl.getVisited().memoryBytes() / 1024);
+
+        synchronized (this) {
+            crawls.remove(site.getId());
+            if (crawls.isEmpty() && running) {
+                log.info("Indexing completed successfully");
+                shutdownPools();
+            }
+        }
+    }
+
+    private void fail(SiteCrawl crawl, String error) {
+        Site site = crawl.getSite();
+        synchronized (crawl) {
+            site.setStatus(Site.Status.FAILED);
+            site.setLastError(error);
+            site.setStatusTime(LocalDateTime.now());
+            siteRepository.save(site);
+        }
+    }
+
+    private void touch(SiteCrawl crawl) {
+        synchronized (crawl) {
+            crawl.getSite().setStatusTime(LocalDateTime.now());
+            siteRepository.save(crawl.getSite());
+        }
+    }
+
+    private void shutdownPools() {
+        running = false;
+        fetchPool.shutdownNow();
+        parsePool.shutdownNow();
+        persistPool.shutdownNow();
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // url is the frontier entry, pageUrl the canonical URL the fetch ended on
+    private record FetchedPage(SiteCrawl crawl, String url, String pageUrl, int depth, int code, byte[] body,
+                               String charset, String etag, String lastModified) {
+    }
+
+    private record PersistTask(SiteCrawl crawl, String url, ParsedPage page) {
+    }
+}
@@ -0,0 +1,95 @@
+package searchengine.services.crawler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Priority queue of a site's pending URLs: shallower pages first, and among pages of one depth
+ * those with more links pointing at them. The link count is bucketed by powers of two, so a URL
+ * is requeued only a logarithmic number of times as links to it are found; superseded copies are
+ * skipped when they reach the head.
+ */
+public class Frontier {
+    private final PriorityQueue<Item> queue = new PriorityQueue<>();
+    // Pending URLs by visited-set key
+    private final Map<String, Node> pending = new HashMap<>();
+    private long sequence = 0;
+
+    public synchronized void add(String key, FrontierEntry entry) {
+        Node node = new Node(key, entry);
+        pending.put(key, node);
+        queue.add(new Item(node, node.bucket, sequence++));
+    }
+
+    /**
+     * Counts one more link to the URL if it is still waiting.
+     */
+    public synchronized void addInlink(String key) {
+        Node node = pending.get(key);
+        if (node == null) {
+            return;
+        }
+        node.inlinks++;
+        int bucket = 32 - Integer.numberOfLeadingZeros(node.inlinks);
+        if (bucket > node.bucket) {
+            node.bucket = bucket;
+            queue.add(new Item(node, bucket, sequence++));
+        }
+    }
+
+    public synchronized FrontierEntry poll() {
+        Item item;
+        while ((item = queue.poll()) != null) {
+            Node node = item.node();
+            if (!node.polled && item.bucket() == node.bucket) {
+                node.polled = true;
+                pending.remove(node.key, node);
+                return node.entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes and returns every waiting URL.
+     */
+    public synchronized List<FrontierEntry> drain() {
+        List<FrontierEntry> entries = new ArrayList<>(pending.size());
+        pending.values().forEach(node -> entries.add(node.entry));
+        pending.clear();
+        queue.clear();
+        return entries;
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    private static final class Node {
+        private final String key;
+        private final FrontierEntry entry;
+        private int inlinks = 1;
+        private int bucket = 1;
+        private boolean polled = false;
+
+        private Node(String key, FrontierEntry entry) {
+            this.key = key;
+            this.entry = entry;
+        }
+    }
+
+    private record Item(Node node, int bucket, long sequence) implements Comparable<Item> {
+        @Override
+        public int compareTo(Item other) {
+            int byDepth = Integer.compare(node.entry.depth(), other.node.entry.depth());
+            if (byDepth != 0) {
+                return byDepth;
+            }
+            int byInlinks = Integer.compare(other.bucket, bucket);
+            return byInlinks != 0 ? byInlinks : Long.compare(sequence, other.sequence);
+        }
+    }
+}
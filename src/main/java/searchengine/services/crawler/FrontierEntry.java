@@ -0,0 +1,7 @@
+package searchengine.services.crawler;
+
+/**
+ * A URL waiting in a site's frontier and its link distance from the main page.
+ */
+public record FrontierEntry(String url, int depth) {
+}
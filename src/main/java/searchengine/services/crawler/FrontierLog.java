@@ -0,0 +1,173 @@
+package searchengine.services.crawler;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only log of a site's crawl frontier, so an interrupted crawl can be resumed. Every URL
+ * accepted into the frontier is written as {@code A<TAB>depth<TAB>url} and every URL that left the
+ * pipeline as {@code D<TAB>url}. Replaying the log gives the visited URLs and the ones still
+ * pending.
+ *
+ * <p>A checkpoint replays the log and rewrites it compactly: finished URLs as
+ * {@code V<TAB>url}, pending ones as {@code A} records. It runs once the records appended since the
+ * last checkpoint outnumber those it wrote, which keeps the log within a constant factor of the
+ * frontier size at an amortized constant cost per record.
+ */
+public class FrontierLog implements AutoCloseable {
+    private final Path file;
+    private final int checkpointInterval;
+    private BufferedWriter writer;
+    private long appended = 0;
+    private long checkpointSize = 0;
+
+    private FrontierLog(Path file, int checkpointInterval, boolean truncate) {
+        this.file = file;
+        this.checkpointInterval = checkpointInterval;
+        try {
+            Files.createDirectories(file.getParent());
+            writer = open(truncate);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Starts a new log, discarding any previous one.
+     */
+    public static FrontierLog create(Path file, int checkpointInterval) {
+        return new FrontierLog(file, checkpointInterval, true);
+    }
+
+    /**
+     * Continues an existing log after {@link #read(Path)}.
+     */
+    public static FrontierLog append(Path file, int checkpointInterval) {
+        return new FrontierLog(file, checkpointInterval, false);
+    }
+
+    /**
+     * Replays a log. A truncated last line, left by a crash mid-write, is ignored.
+     */
+    public static State read(Path file) {
+        List<String> finished = new ArrayList<>();
+        // Insertion order keeps pending URLs in the order they were discovered
+        Map<String, Integer> pending = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", 3);
+                switch (parts[0]) {
+                    case "A" -> {
+                        if (parts.length == 3 && !parts[1].isEmpty() && parts[1].chars().allMatch(Character::isDigit)) {
+                            pending.put(parts[2], Integer.parseInt(parts[1]));
+                        }
+                    }
+                    case "D" -> {
+                        if (parts.length == 2 && pending.remove(parts[1]) != null) {
+                            finished.add(parts[1]);
+                        }
+                    }
+                    case "V" -> {
+                        if (parts.length == 2) {
+                            finished.add(parts[1]);
+                        }
+                    }
+                    default -> {
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        List<FrontierEntry> pendingEntries = new ArrayList<>(pending.size());
+        pending.forEach((url, depth) -> pendingEntries.add(new FrontierEntry(url, depth)));
+        return new State(finished, pendingEntries);
+    }
+
+    public synchronized void accepted(String url, int depth) {
+        write("A\t" + depth + "\t" + url);
+    }
+
+    public synchronized void completed(String url) {
+        write("D\t" + url);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writer = null;
+        }
+    }
+
+    private void write(String record) {
+        if (writer == null || record.indexOf('\n') >= 0 || record.indexOf('\r') >= 0) {
+            return;
+        }
+        try {
+            writer.write(record);
+            writer.newLine();
+            writer.flush();
+            if (++appended >= Math.max(checkpointInterval, checkpointSize)) {
+                checkpoint();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void checkpoint() throws IOException {
+        writer.close();
+        State state = read(file);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter compact = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            for (String url : state.finished()) {
+                compact.write("V\t" + url);
+                compact.newLine();
+            }
+            for (FrontierEntry entry : state.pending()) {
+                compact.write("A\t" + entry.depth() + "\t" + entry.url());
+                compact.newLine();
+            }
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        checkpointSize = state.finished().size() + state.pending().size();
+        appended = 0;
+        writer = open(false);
+    }
+
+    private BufferedWriter open(boolean truncate) throws IOException {
+        return Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                truncate ? StandardOpenOption.TRUNCATE_EXISTING : StandardOpenOption.APPEND);
+    }
+
+    /**
+     * URLs that left the pipeline and URLs still waiting, with their depth.
+     */
+    public record State(List<String> finished, List<FrontierEntry> pending) {
+    }
+}
@@ -0,0 +1,57 @@
+package searchengine.services.crawler;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.SitesList;
+import searchengine.model.Site;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Locates the {@link FrontierLog} of every site under {@code indexing-settings.frontier-dir}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FrontierStore {
+    private final SitesList settings;
+
+    public FrontierLog create(Site site) {
+        return FrontierLog.create(file(site), settings.getFrontierCheckpointInterval());
+    }
+
+    /**
+     * Replays the frontier of an interrupted crawl and reopens its log for appending.
+     */
+    public Optional<Restored> restore(Site site) {
+        Path file = file(site);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        FrontierLog.State state = FrontierLog.read(file);
+        return Optional.of(new Restored(state, FrontierLog.append(file, settings.getFrontierCheckpointInterval())));
+    }
+
+    public boolean exists(Site site) {
+        return Files.exists(file(site));
+    }
+
+    public void delete(Site site) {
+        try {
+            Files.deleteIfExists(file(site));
+        } catch (IOException e) {
+            log.warn("Could not delete frontier log of {}: {}", site.getUrl(), e.getMessage());
+        }
+    }
+
+    private Path file(Site site) {
+        return Path.of(settings.getFrontierDir(), "site-" + site.getId() + ".log");
+    }
+
+    public record Restored(FrontierLog.State state, FrontierLog log) {
+    }
+}
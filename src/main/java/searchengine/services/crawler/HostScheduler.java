@@ -0,0 +1,248 @@
+package searchengine.services.crawler;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.Config;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hands out fetch slots per host without blocking the caller. Tasks wait in a per-host queue
+ * and are released one at a time, spaced by the host's current delay. The delay adapts to
+ * the responses reported through {@link Slot}: it doubles on 429/503 (honouring Retry-After),
+ * grows when latency rises and shrinks back towards the minimum while the host answers quickly.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HostScheduler {
+    private static final double LATENCY_SMOOTHING = 0.2;
+    private static final double SLOW_RESPONSE_FACTOR = 2.0;
+
+    private final Config config;
+    private final Map<String, HostState> hosts = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "crawl-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Queues a task for the host. The task runs on the scheduler thread once a slot is free,
+     * so it should only hand work off to an executor, and it must finish the slot it receives.
+     */
+    public void submit(String host, Object owner, Consumer<Slot> task) {
+        HostState state = hosts.computeIfAbsent(host, HostState::new);
+        synchronized (state) {
+            state.waiting.add(new Waiting(owner, task));
+        }
+        dispatch(state);
+    }
+
+    /**
+     * Drops every queued task submitted by the owner, e.g. when its crawl is stopped.
+     */
+    public void cancel(Object owner) {
+        hosts.values().forEach(state -> {
+            synchronized (state) {
+                state.waiting.removeIf(waiting -> waiting.owner() == owner);
+            }
+        });
+    }
+
+    public long currentDelay(String host) {
+        HostState state = hosts.get(host);
+        return state != null ? state.delay : config.getDelay();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * Hands out free slots of the host. Only one call per host runs the loop: a call made while
+     * it runs, including a release from inside a task that was rejected, just asks the loop to
+     * look again, so a long queue is drained iteratively rather than recursively.
+     */
+    private void dispatch(HostState state) {
+        synchronized (state) {
+            if (state.dispatching) {
+                state.dispatchAgain = true;
+                return;
+            }
+            state.dispatching = true;
+        }
+
+        while (true) {
+            Waiting next;
+            Slot slot;
+            synchronized (state) {
+                next = nextReady(state);
+                if (next == null) {
+                    if (state.dispatchAgain) {
+                        state.dispatchAgain = false;
+                        continue;
+                    }
+                    state.dispatching = false;
+                    return;
+                }
+                state.inFlight++;
+                state.nextSlot = System.currentTimeMillis() + state.delay;
+                slot = new Slot(state);
+            }
+
+            try {
+                next.task().accept(slot);
+            } catch (Exception e) {
+                log.error("Error starting fetch for host {}", state.host, e);
+                slot.cancel();
+            }
+        }
+    }
+
+    /**
+     * The next task that may start now, or {@code null}. Arms the timer when the host's delay
+     * has not yet passed. Called with the state locked.
+     */
+    private Waiting nextReady(HostState state) {
+        if (state.waiting.isEmpty() || state.inFlight >= config.getMaxConnectionsPerHost()) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (now < state.nextSlot) {
+            if (!state.timerArmed) {
+                state.timerArmed = true;
+                timer.schedule(() -> {
+                    synchronized (state) {
+                        state.timerArmed = false;
+                    }
+                    dispatch(state);
+                }, state.nextSlot - now, TimeUnit.MILLISECONDS);
+            }
+            return null;
+        }
+        return state.waiting.poll();
+    }
+
+    private void release(HostState state, Integer status, long latencyMillis, String retryAfter) {
+        synchronized (state) {
+            state.inFlight--;
+            if (status != null) {
+                adapt(state, status, latencyMillis, retryAfter);
+            }
+        }
+        dispatch(state);
+    }
+
+    private void adapt(HostState state, int status, long latencyMillis, String retryAfter) {
+        long minDelay = config.getMinDelay();
+        long maxDelay = config.getMaxDelay();
+        long previous = state.delay;
+
+        if (status == 429 || status == 503) {
+            state.delay = Math.min(maxDelay, Math.max(state.delay * 2, minDelay));
+            log.info("Host {} is throttling (status {}), delay {} -> {} ms", state.host, status, previous, state.delay);
+            long retryAfterMillis = parseRetryAfter(retryAfter);
+            if (retryAfterMillis > 0) {
+                state.nextSlot = Math.max(state.nextSlot, System.currentTimeMillis() + Math.min(retryAfterMillis, maxDelay));
+            }
+        } else if (status >= 500 || status < 0) {
+            state.delay = Math.min(maxDelay, state.delay + state.delay / 2 + 1);
+        } else {
+            boolean slow = state.latency > 0 && latencyMillis > state.latency * SLOW_RESPONSE_FACTOR;
+            state.latency = state.latency == 0
+                    ? latencyMillis
+                    : state.latency + LATENCY_SMOOTHING * (latencyMillis - state.latency);
+            state.delay = slow
+                    ? Math.min(maxDelay, state.delay + state.delay / 2 + 1)
+                    : Math.max(minDelay, state.delay - state.delay / 10);
+        }
+
+        if (state.delay > previous) {
+            log.debug("Slowing down {}: delay {} -> {} ms after status {}", state.host, previous, state.delay, status);
+        }
+    }
+
+    private static long parseRetryAfter(String value) {
+        if (value == null || value.isBlank()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.trim()) * 1000;
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime date = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, Duration.between(ZonedDateTime.now(date.getZone()), date).toMillis());
+            } catch (Exception ignored) {
+                return 0;
+            }
+        }
+    }
+
+    private record Waiting(Object owner, Consumer<Slot> task) {
+    }
+
+    private class HostState {
+        private final String host;
+        private final Deque<Waiting> waiting = new ArrayDeque<>();
+        private long delay;
+        private long nextSlot = 0;
+        private double latency = 0;
+        private int inFlight = 0;
+        private boolean timerArmed = false;
+        private boolean dispatching = false;
+        private boolean dispatchAgain = false;
+
+        private HostState(String host) {
+            this.host = host;
+            this.delay = config.getDelay();
+        }
+    }
+
+    /**
+     * A granted fetch slot. Exactly one of the methods must be called when the fetch ends.
+     */
+    public class Slot {
+        private final HostState state;
+        private boolean finished = false;
+
+        private Slot(HostState state) {
+            this.state = state;
+        }
+
+        public void done(int status, long latencyMillis, String retryAfter) {
+            finish(status, latencyMillis, retryAfter);
+        }
+
+        public void failed(long latencyMillis) {
+            finish(-1, latencyMillis, null);
+        }
+
+        public void cancel() {
+            finish(null, 0, null);
+        }
+
+        private void finish(Integer status, long latencyMillis, String retryAfter) {
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                finished = true;
+            }
+            release(state, status, latencyMillis, retryAfter);
+        }
+    }
+}
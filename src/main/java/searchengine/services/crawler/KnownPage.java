@@ -0,0 +1,7 @@
+package searchengine.services.crawler;
+
+/**
+ * A page stored by a previous crawl, with the validators needed for a conditional request.
+ */
+public record KnownPage(int id, String etag, String lastModified, String contentHash) {
+}
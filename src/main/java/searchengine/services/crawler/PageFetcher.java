@@ -0,0 +1,299 @@
+package searchengine.services.crawler;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.springframework.stereotype.Component;
+import searchengine.config.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * HTTP client of the crawler and of single page indexing. One {@link HttpClient} keeps connections
+ * to every host alive between requests. Bodies are requested compressed and read as a stream up
+ * to {@code jsoup.max-body-size}; error responses and, for pages, non-HTML content types are
+ * dropped after the headers without reading the body.
+ */
+@Slf4j
+@Component
+public class PageFetcher {
+    private static final String ACCEPT = "text/html,application/xhtml+xml;q=0.9,*/*;q=0.8";
+
+    private final Config config;
+    private final HttpClient client;
+    private final MeterRegistry meterRegistry;
+    // HttpClient times out waiting for headers only, a stalled body is cut off by closing its stream
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "fetch-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public PageFetcher(Config config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(config.getTimeout()))
+                .build();
+    }
+
+    /**
+     * Fetches an HTML page. Other content types come back with {@link Outcome#NOT_HTML} and no body.
+     */
+    public Response fetchPage(String url, Map<String, String> headers) throws IOException, InterruptedException {
+        return fetch(url, headers, true);
+    }
+
+    /**
+     * Fetches a resource of any content type, e.g. robots.txt.
+     */
+    public Response fetchText(String url) throws IOException, InterruptedException {
+        return fetch(url, Map.of(), false);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+    }
+
+    /**
+     * Streams a resource of any content type to the reader, decoded from its Content-Encoding and
+     * without a size cap, e.g. a sitemap. Returns {@code null} without reading when the status is
+     * not 2xx.
+     */
+    public <T> T stream(String url, BodyReader<T> reader) throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        HttpResponse<InputStream> response = send(url, Map.of(), started);
+        if (response.statusCode() >= 300) {
+            response.body().close();
+            record(Outcome.NO_BODY, started, 0, 0);
+            return null;
+        }
+        Body<T> body = readBody(url, response, started, reader);
+        record(Outcome.OK, started, body.received(), body.decoded());
+        return body.value();
+    }
+
+    private Response fetch(String url, Map<String, String> headers, boolean htmlOnly)
+            throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        HttpResponse<InputStream> response = send(url, headers, started);
+
+        String contentType = response.headers().firstValue("Content-Type").orElse(null);
+        Outcome outcome = Outcome.OK;
+        if (response.statusCode() >= 300) {
+            outcome = Outcome.NO_BODY;
+        } else if (htmlOnly && !isHtml(contentType)) {
+            outcome = Outcome.NOT_HTML;
+        }
+
+        byte[] bytes = new byte[0];
+        long received = 0;
+        if (outcome == Outcome.OK) {
+            Body<byte[]> body = readBody(url, response, started, in -> in.readNBytes(config.getMaxBodySize() + 1));
+            bytes = body.value();
+            received = body.received();
+            if (bytes.length > config.getMaxBodySize()) {
+                bytes = Arrays.copyOf(bytes, config.getMaxBodySize());
+                outcome = Outcome.TRUNCATED;
+                log.warn("Page {} exceeds {} bytes, truncated", url, config.getMaxBodySize());
+            }
+        } else {
+            // Closing an unread body drops the connection instead of downloading the rest
+            response.body().close();
+        }
+
+        long elapsed = record(outcome, started, received, bytes.length);
+        return new Response(response.uri().toString(), response.statusCode(), response.headers(), bytes,
+                charset(contentType), outcome, elapsed, received);
+    }
+
+    private HttpResponse<InputStream> send(String url, Map<String, String> headers, long started)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(config.getTimeout()))
+                .header("User-Agent", config.getUserAgent())
+                .header("Accept", ACCEPT)
+                .header("Accept-Encoding", "gzip, deflate");
+        if (config.getReferrer() != null) {
+            request.header("Referer", config.getReferrer());
+        }
+        headers.forEach(request::header);
+        try {
+            return client.send(request.GET().build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (IOException e) {
+            record(Outcome.FAILED, started, 0, 0);
+            throw e;
+        }
+    }
+
+    /**
+     * Runs the reader over the decoded body within {@code jsoup.timeout} and closes the stream.
+     */
+    private <T> Body<T> readBody(String url, HttpResponse<InputStream> response, long started,
+                                 BodyReader<T> reader) throws IOException {
+        CountingInputStream received = new CountingInputStream(response.body());
+        AtomicBoolean timedOut = new AtomicBoolean();
+        ScheduledFuture<?> deadline = watchdog.schedule(() -> {
+            timedOut.set(true);
+            closeQuietly(received);
+        }, config.getTimeout(), TimeUnit.MILLISECONDS);
+        try (received; CountingInputStream decoded = new CountingInputStream(decode(received, response.headers()))) {
+            T value = reader.read(decoded);
+            return new Body<>(value, received.count, decoded.count);
+        } catch (IOException e) {
+            record(Outcome.FAILED, started, received.count, 0);
+            if (timedOut.get()) {
+                throw new HttpTimeoutException("Body of " + url + " not received within " + config.getTimeout() + " ms");
+            }
+            throw e;
+        } finally {
+            deadline.cancel(false);
+        }
+    }
+
+    private long record(Outcome outcome, long started, long receivedBytes, long bodyBytes) {
+        long elapsed = System.nanoTime() - started;
+        String tag = outcome.name().toLowerCase(Locale.ROOT);
+        Timer.builder("crawler.fetch").tag("outcome", tag).register(meterRegistry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("crawler.fetch.received").baseUnit("bytes").tag("outcome", tag)
+                .register(meterRegistry).record(receivedBytes);
+        DistributionSummary.builder("crawler.fetch.body").baseUnit("bytes").tag("outcome", tag)
+                .register(meterRegistry).record(bodyBytes);
+        return TimeUnit.NANOSECONDS.toMillis(elapsed);
+    }
+
+    private static InputStream decode(InputStream in, HttpHeaders headers) throws IOException {
+        String encoding = headers.firstValue("Content-Encoding").orElse("").trim().toLowerCase(Locale.ROOT);
+        return switch (encoding) {
+            case "gzip", "x-gzip" -> new GZIPInputStream(in);
+            case "deflate" -> new InflaterInputStream(in);
+            default -> in;
+        };
+    }
+
+    private static boolean isHtml(String contentType) {
+        if (contentType == null) {
+            return true;
+        }
+        String type = contentType.trim().toLowerCase(Locale.ROOT);
+        return type.startsWith("text/html") || type.startsWith("application/xhtml+xml");
+    }
+
+    private static String charset(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        int start = contentType.toLowerCase(Locale.ROOT).indexOf("charset=");
+        if (start < 0) {
+            return null;
+        }
+        String charset = contentType.substring(start + "charset=".length());
+        int end = charset.indexOf(';');
+        charset = (end >= 0 ? charset.substring(0, end) : charset).trim().replace("\"", "").replace("'", "");
+        try {
+            return Charset.isSupported(charset) ? charset : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException ignored) {
+            // The reader sees the closed stream and fails
+        }
+    }
+
+    @FunctionalInterface
+    public interface BodyReader<T> {
+        T read(InputStream body) throws IOException;
+    }
+
+    public enum Outcome {
+        OK,
+        TRUNCATED,
+        NOT_HTML,
+        // Redirect left unfollowed, not modified or error status
+        NO_BODY,
+        FAILED
+    }
+
+    /**
+     * A fetched response. The body is raw bytes; {@code charset} is the one the Content-Type header
+     * names, {@code null} when the page has to say it.
+     */
+    public record Response(String url, int statusCode, HttpHeaders headers, byte[] body, String charset,
+                           Outcome outcome, long elapsedMillis, long receivedBytes) {
+        public String header(String name) {
+            return headers.firstValue(name).orElse(null);
+        }
+
+        public Document parse() throws IOException {
+            return Jsoup.parse(new ByteArrayInputStream(body), charset, url);
+        }
+
+        public String text() {
+            return new String(body, charset != null ? Charset.forName(charset) : StandardCharsets.UTF_8);
+        }
+    }
+
+    private record Body<T>(T value, long received, long decoded) {
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+}
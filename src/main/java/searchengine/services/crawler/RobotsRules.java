@@ -0,0 +1,138 @@
+package searchengine.services.crawler;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Allow and Disallow rules of the robots.txt group that applies to the crawler, matched as in
+ * RFC 9309: the longest matching rule wins and Allow wins a tie. {@code *} matches any sequence
+ * and a trailing {@code $} anchors the end of the path.
+ */
+public class RobotsRules {
+    public static final RobotsRules ALLOW_ALL = new RobotsRules(List.of(), List.of());
+
+    // Most specific first, so the first match decides
+    private final List<Rule> rules;
+    // Sitemap lines belong to no group and apply to every crawler
+    private final List<String> sitemaps;
+
+    private RobotsRules(List<Rule> rules, List<String> sitemaps) {
+        this.sitemaps = List.copyOf(sitemaps);
+        this.rules = rules.stream()
+                .sorted(Comparator.comparingInt((Rule rule) -> rule.path().length()).reversed()
+                        .thenComparing(rule -> !rule.allow()))
+                .toList();
+    }
+
+    /**
+     * Picks the group whose user-agent is the longest one contained in {@code userAgent}, the
+     * {@code *} group when none is, and allows everything when there is neither.
+     */
+    public static RobotsRules parse(String content, String userAgent) {
+        String agent = userAgent == null ? "" : userAgent.toLowerCase(Locale.ROOT);
+        List<String> groupAgents = new ArrayList<>();
+        List<Rule> groupRules = new ArrayList<>();
+        boolean inRules = false;
+        String bestAgent = null;
+        List<Rule> best = new ArrayList<>();
+        List<Rule> wildcard = new ArrayList<>();
+        List<String> sitemaps = new ArrayList<>();
+
+        for (String line : (content + "\nuser-agent:").split("\r\n|\r|\n")) {
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String field = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+
+            if (field.equals("user-agent")) {
+                if (inRules) {
+                    // A user-agent line after rules closes the group
+                    for (String groupAgent : groupAgents) {
+                        if (groupAgent.equals("*")) {
+                            wildcard.addAll(groupRules);
+                        } else if (agent.contains(groupAgent)) {
+                            if (bestAgent == null || groupAgent.length() > bestAgent.length()) {
+                                bestAgent = groupAgent;
+                                best = new ArrayList<>();
+                            }
+                            if (groupAgent.equals(bestAgent)) {
+                                best.addAll(groupRules);
+                            }
+                        }
+                    }
+                    groupAgents.clear();
+                    groupRules = new ArrayList<>();
+                    inRules = false;
+                }
+                if (!value.isEmpty()) {
+                    groupAgents.add(value.toLowerCase(Locale.ROOT));
+                }
+            } else if (field.equals("sitemap")) {
+                if (!value.isEmpty()) {
+                    sitemaps.add(value);
+                }
+            } else if (field.equals("allow") || field.equals("disallow")) {
+                inRules = true;
+                if (!value.isEmpty()) {
+                    groupRules.add(Rule.of(value, field.equals("allow")));
+                }
+            }
+        }
+
+        List<Rule> rules = bestAgent != null ? best : wildcard;
+        return rules.isEmpty() && sitemaps.isEmpty() ? ALLOW_ALL : new RobotsRules(rules, sitemaps);
+    }
+
+    public List<String> getSitemaps() {
+        return sitemaps;
+    }
+
+    /**
+     * Whether the path with its query may be fetched.
+     */
+    public boolean allows(String path) {
+        for (Rule rule : rules) {
+            if (rule.matches(path)) {
+                return rule.allow();
+            }
+        }
+        return true;
+    }
+
+    private record Rule(String path, boolean allow, Pattern pattern) {
+        static Rule of(String path, boolean allow) {
+            boolean anchored = path.endsWith("$");
+            if (!anchored && path.indexOf('*') < 0) {
+                return new Rule(path, allow, null);
+            }
+            String body = anchored ? path.substring(0, path.length() - 1) : path;
+            StringBuilder regex = new StringBuilder();
+            String[] literals = body.split("\\*", -1);
+            for (int i = 0; i < literals.length; i++) {
+                if (i > 0) {
+                    regex.append(".*");
+                }
+                if (!literals[i].isEmpty()) {
+                    regex.append(Pattern.quote(literals[i]));
+                }
+            }
+            if (anchored) {
+                regex.append('$');
+            }
+            return new Rule(path, allow, Pattern.compile(regex.toString(), Pattern.DOTALL));
+        }
+
+        boolean matches(String target) {
+            return pattern == null ? target.startsWith(path) : pattern.matcher(target).lookingAt();
+        }
+    }
+}
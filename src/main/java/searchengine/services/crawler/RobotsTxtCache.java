@@ -0,0 +1,64 @@
+package searchengine.services.crawler;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.Config;
+import searchengine.config.SitesList;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsed robots.txt per origin, fetched on first use and kept for
+ * {@code indexing-settings.robots-cache-minutes}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RobotsTxtCache {
+    private final Config config;
+    private final SitesList settings;
+    private final PageFetcher pageFetcher;
+    private final Map<String, Cached> cache = new ConcurrentHashMap<>();
+
+    public RobotsRules rules(String origin) {
+        Cached cached = cache.get(origin);
+        if (cached != null && !expired(cached)) {
+            return cached.rules();
+        }
+        // Callers for the same origin wait for one download instead of each fetching the file
+        return cache.compute(origin, (key, current) ->
+                current != null && !expired(current) ? current : new Cached(load(key), System.currentTimeMillis()))
+                .rules();
+    }
+
+    private boolean expired(Cached cached) {
+        return System.currentTimeMillis() - cached.loadedAt() > TimeUnit.MINUTES.toMillis(settings.getRobotsCacheMinutes());
+    }
+
+    /**
+     * A missing file allows everything. So does a file that cannot be fetched, a stricter reading
+     * would stop the whole crawl on one failed request.
+     */
+    private RobotsRules load(String origin) {
+        try {
+            PageFetcher.Response response = pageFetcher.fetchText(origin + "/robots.txt");
+            if (response.statusCode() >= 400) {
+                log.info("No robots.txt at {} (status {})", origin, response.statusCode());
+                return RobotsRules.ALLOW_ALL;
+            }
+            return RobotsRules.parse(response.text(), config.getUserAgent());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return RobotsRules.ALLOW_ALL;
+        } catch (Exception e) {
+            log.warn("Could not load robots.txt of {}: {}", origin, e.getMessage());
+            return RobotsRules.ALLOW_ALL;
+        }
+    }
+
+    private record Cached(RobotsRules rules, long loadedAt) {
+    }
+}
@@ -0,0 +1,185 @@
+package searchengine.services.crawler;
+
+import lombok.Getter;
+import searchengine.model.Site;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Crawl state of one site while it moves through {@link CrawlPipeline}.
+ */
+@Getter
+public class SiteCrawl {
+    private final Site site;
+    private final String rootUrl;
+    private final String host;
+    private final Frontier frontier = new Frontier();
+    private final VisitedSet visited = new VisitedSet();
+    // URLs accepted into the frontier that have not yet left the pipeline
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Map<String, Integer> retries = new ConcurrentHashMap<>();
+    // Pages stored by the previous crawl, keyed by path; empty on a full reindex
+    private final Map<String, KnownPage> knownPages;
+    private final VisitedSet seenPaths = new VisitedSet();
+    private final FrontierLog frontierLog;
+    private final UrlCanonicalizer canonicalizer;
+    private final CrawlBudget budget;
+    // Fetches started, counted against the page budget
+    private final AtomicInteger fetches = new AtomicInteger();
+    // Set when the page budget left URLs unvisited
+    private volatile boolean truncated = false;
+    private volatile boolean stopped = false;
+
+    public SiteCrawl(Site site, Map<String, KnownPage> knownPages, FrontierLog frontierLog,
+                     UrlCanonicalizer canonicalizer, CrawlBudget budget) {
+        this.site = site;
+        this.rootUrl = site.getUrl();
+        this.host = URI.create(site.getUrl()).getHost();
+        this.knownPages = knownPages;
+        this.frontierLog = frontierLog;
+        this.canonicalizer = canonicalizer;
+        this.budget = budget;
+    }
+
+    public boolean isIncremental() {
+        return !knownPages.isEmpty();
+    }
+
+    /**
+     * Ids of previously stored pages that this crawl did not reach.
+     */
+    public List<Integer> disappearedPageIds() {
+        return knownPages.entrySet().stream()
+                .filter(entry -> !seenPaths.contains(entry.getKey()))
+                .map(entry -> entry.getValue().id())
+                .toList();
+    }
+
+    /**
+     * Marks the URL visited and returns {@code true} if it had not been, trailing slash variants
+     * count as one URL.
+     */
+    public boolean claim(String url) {
+        return visited.claim(canonicalizer.key(url));
+    }
+
+    /**
+     * Adds the URL to the frontier unless it has been seen before, is deeper than the budget
+     * allows or the page budget is spent. A URL already waiting gains priority instead.
+     */
+    public boolean offer(String url, int depth) {
+        if (stopped || depth > budget.maxDepth()) {
+            return false;
+        }
+        if (isBudgetReached()) {
+            truncated = true;
+            return false;
+        }
+        String key = canonicalizer.key(url);
+        if (!visited.claim(key)) {
+            frontier.addInlink(key);
+            return false;
+        }
+        pending.incrementAndGet();
+        frontierLog.accepted(url, depth);
+        frontier.add(key, new FrontierEntry(url, depth));
+        return true;
+    }
+
+    /**
+     * Keeps the crawl from finishing while work outside the frontier may still offer URLs.
+     */
+    public void hold() {
+        pending.incrementAndGet();
+    }
+
+    /**
+     * Ends a {@link #hold()} and returns {@code true} when nothing else was pending.
+     */
+    public boolean release() {
+        return pending.decrementAndGet() == 0;
+    }
+
+    /**
+     * Takes the most valuable waiting URL, or {@code null} when there is none or the page budget
+     * is spent.
+     */
+    public FrontierEntry next() {
+        if (fetches.getAndUpdate(count -> count < budget.maxPages() ? count + 1 : count) >= budget.maxPages()) {
+            return null;
+        }
+        FrontierEntry entry = frontier.poll();
+        if (entry == null) {
+            fetches.decrementAndGet();
+        }
+        return entry;
+    }
+
+    public boolean isBudgetReached() {
+        return fetches.get() >= budget.maxPages();
+    }
+
+    /**
+     * Empties the frontier once the page budget is spent and returns the URLs left unvisited.
+     */
+    public List<FrontierEntry> dropOverBudget() {
+        List<FrontierEntry> dropped = frontier.drain();
+        if (!dropped.isEmpty()) {
+            truncated = true;
+        }
+        return dropped;
+    }
+
+    /**
+     * Loads the frontier of an interrupted crawl: finished URLs are only marked visited, pending
+     * ones are queued again. Returns the number of pending URLs.
+     */
+    public int restore(FrontierLog.State state) {
+        state.finished().forEach(this::claim);
+        fetches.set(state.finished().size());
+        for (FrontierEntry entry : state.pending()) {
+            String key = canonicalizer.key(entry.url());
+            if (visited.claim(key)) {
+                pending.incrementAndGet();
+                frontier.add(key, entry);
+            }
+        }
+        return pending.get();
+    }
+
+    /**
+     * Puts a throttled URL back into the frontier, at most {@code maxRetries} times per URL.
+     */
+    public boolean retry(FrontierEntry entry, int maxRetries) {
+        if (stopped || retries.merge(entry.url(), 1, Integer::sum) > maxRetries) {
+            return false;
+        }
+        // The throttled attempt does not count against the page budget
+        fetches.decrementAndGet();
+        frontier.add(canonicalizer.key(entry.url()), entry);
+        return true;
+    }
+
+    /**
+     * Marks one URL as finished and returns {@code true} when it was the last one. After a stop
+     * nothing is logged, so URLs cut short are fetched again on resume.
+     */
+    public boolean complete(String url) {
+        if (!stopped) {
+            frontierLog.completed(url);
+        }
+        return pending.decrementAndGet() == 0;
+    }
+
+    public String path(String url) {
+        return canonicalizer.path(url);
+    }
+
+    public void stop() {
+        stopped = true;
+    }
+}
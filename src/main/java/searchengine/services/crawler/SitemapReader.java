@@ -0,0 +1,209 @@
+package searchengine.services.crawler;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.SitesList;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.function.UnaryOperator;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads sitemaps and sitemap indexes. Files are parsed as a stream, gzip-compressed ones are
+ * unpacked on the fly, so a large sitemap is never held in memory.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SitemapReader {
+    // The sitemap protocol caps a file at 50 MB uncompressed
+    private static final long MAX_FILE_BYTES = 50L * 1024 * 1024;
+    // And at 50 000 URLs
+    private static final int MAX_URLS = 50_000;
+
+    private final PageFetcher pageFetcher;
+    private final SitesList settings;
+
+    /**
+     * Collects page URLs from the sitemaps and the indexes they lead to, at most
+     * {@code indexing-settings.max-sitemap-files} files. {@code accept} maps a URL to the form to
+     * keep or to {@code null} to drop it. Returns up to {@code limit} URLs, the most recently
+     * modified first and those without a date last.
+     */
+    public List<Entry> read(List<String> sitemaps, UnaryOperator<String> accept, int limit) {
+        Deque<String> queue = new ArrayDeque<>(sitemaps);
+        Set<String> seenFiles = new HashSet<>();
+        Map<String, Instant> urls = new HashMap<>();
+        int files = 0;
+
+        while (!queue.isEmpty() && files < settings.getMaxSitemapFiles() && urls.size() < MAX_URLS) {
+            String sitemap = queue.poll();
+            if (!seenFiles.add(sitemap)) {
+                continue;
+            }
+            files++;
+            try {
+                Boolean found = pageFetcher.stream(sitemap, body -> {
+                    parse(body, queue, accept, urls);
+                    return true;
+                });
+                if (found == null) {
+                    log.debug("No sitemap at {}", sitemap);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.warn("Could not read sitemap {}: {}", sitemap, e.getMessage());
+            }
+        }
+
+        List<Entry> entries = new ArrayList<>(urls.size());
+        urls.forEach((url, modified) -> entries.add(new Entry(url, modified)));
+        entries.sort(Comparator.comparing(Entry::lastModified, Comparator.nullsLast(Comparator.reverseOrder())));
+        return entries.size() > limit ? entries.subList(0, limit) : entries;
+    }
+
+    /**
+     * Adds the page URLs of a {@code urlset} and queues the files of a {@code sitemapindex}. What
+     * was read before a malformed or cut off part is kept.
+     */
+    private static void parse(InputStream body, Deque<String> queue, UnaryOperator<String> accept,
+                              Map<String, Instant> urls) throws IOException {
+        XMLStreamReader reader = null;
+        try {
+            reader = xmlInputFactory().createXMLStreamReader(new LimitedInputStream(unpack(body), MAX_FILE_BYTES));
+            String loc = null;
+            Instant lastModified = null;
+            while (reader.hasNext() && urls.size() < MAX_URLS) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    switch (reader.getLocalName()) {
+                        case "url", "sitemap" -> {
+                            loc = null;
+                            lastModified = null;
+                        }
+                        case "loc" -> loc = reader.getElementText().trim();
+                        case "lastmod" -> lastModified = parseDate(reader.getElementText().trim());
+                        default -> {
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && loc != null) {
+                    if (reader.getLocalName().equals("sitemap")) {
+                        queue.add(loc);
+                    } else if (reader.getLocalName().equals("url")) {
+                        String url = accept.apply(loc);
+                        if (url != null && (!urls.containsKey(url) || isNewer(lastModified, urls.get(url)))) {
+                            urls.put(url, lastModified);
+                        }
+                    }
+                }
+            }
+        } catch (XMLStreamException e) {
+            log.debug("Sitemap parsing stopped: {}", e.getMessage());
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
+                    // Nothing left to release
+                }
+            }
+        }
+    }
+
+    private static boolean isNewer(Instant modified, Instant previous) {
+        return modified != null && (previous == null || modified.isAfter(previous));
+    }
+
+    /**
+     * A {@code .xml.gz} file usually arrives as plain gzip data rather than with a
+     * Content-Encoding, so it is recognised by its magic bytes.
+     */
+    private static InputStream unpack(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        buffered.mark(2);
+        int first = buffered.read();
+        int second = buffered.read();
+        buffered.reset();
+        return first == 0x1f && second == 0x8b ? new GZIPInputStream(buffered) : buffered;
+    }
+
+    /**
+     * W3C datetime as used by sitemaps: a date, or a date and time with or without an offset.
+     */
+    static Instant parseDate(String value) {
+        try {
+            if (value.length() == 10) {
+                return LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant();
+            }
+            if (value.endsWith("Z") || value.matches(".*[+-]\\d\\d:?\\d\\d$")) {
+                return OffsetDateTime.parse(value).toInstant();
+            }
+            return LocalDateTime.parse(value).toInstant(ZoneOffset.UTC);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static XMLInputFactory xmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * A page URL from a sitemap and its {@code lastmod}, {@code null} when not given.
+     */
+    public record Entry(String url, Instant lastModified) {
+    }
+
+    private static final class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        private LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+    }
+}
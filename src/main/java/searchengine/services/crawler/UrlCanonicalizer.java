@@ -0,0 +1,233 @@
+package searchengine.services.crawler;
+
+import searchengine.config.UrlRules;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Canonical form of one site's links and the rules deciding which of them are crawled, compiled
+ * once per crawl. Canonicalization drops the fragment, user info, default port and ignored query
+ * parameters, maps {@code www.} and scheme variants of the site host to the configured one,
+ * collapses repeated slashes and sorts the remaining parameters.
+ *
+ * <p>Trailing slash variants are kept apart in the URL so pages are fetched as linked, without an
+ * extra redirect, and are joined by {@link #key(String)} for the visited set.
+ */
+public class UrlCanonicalizer {
+    private final String baseUrl;
+    private final String origin;
+    private final String host;
+    private final String bareHost;
+    private final int port;
+    private final String rootPath;
+    private final Pattern exclude;
+    private final Pattern ignoredParameters;
+    private final boolean allowQuery;
+    private final boolean respectRobots;
+
+    public UrlCanonicalizer(String rootUrl, UrlRules rules) {
+        Parts root = split(rootUrl.trim());
+        if (root == null) {
+            throw new IllegalArgumentException("Not an http(s) URL: " + rootUrl);
+        }
+        this.baseUrl = rootUrl.endsWith("/") ? rootUrl.substring(0, rootUrl.length() - 1) : rootUrl;
+        this.host = root.host();
+        this.bareHost = stripWww(root.host());
+        this.port = root.port();
+        this.origin = root.scheme() + "://" + root.host() + (root.port() >= 0 ? ":" + root.port() : "");
+        this.rootPath = trimSlash(root.path());
+        this.exclude = rules.getExclude().isEmpty() ? null : Pattern.compile(
+                String.join("|", rules.getExclude().stream().map(regex -> "(?:" + regex + ")").toList()),
+                Pattern.CASE_INSENSITIVE);
+        this.ignoredParameters = rules.getIgnoredParameters().isEmpty() ? null : Pattern.compile(
+                String.join("|", rules.getIgnoredParameters().stream().map(UrlCanonicalizer::parameterRegex).toList()),
+                Pattern.CASE_INSENSITIVE);
+        this.allowQuery = rules.isAllowQuery();
+        this.respectRobots = rules.isRespectRobots();
+    }
+
+    /**
+     * Returns the canonical URL, or {@code null} when the link leaves the site or the rules
+     * exclude it.
+     */
+    public String canonicalize(String url) {
+        Parts parts = split(url.trim());
+        if (parts == null || parts.port() != port || !stripWww(parts.host()).equals(bareHost)) {
+            return null;
+        }
+
+        String path = collapseSlashes(parts.path());
+        String trimmed = trimSlash(path);
+        if (!rootPath.equals("/") && !trimmed.equals(rootPath) && !trimmed.startsWith(rootPath + "/")) {
+            return null;
+        }
+        if (exclude != null && exclude.matcher(path).find()) {
+            return null;
+        }
+
+        String query = canonicalQuery(parts.query());
+        if (query == null) {
+            return null;
+        }
+        return origin + path + query;
+    }
+
+    /**
+     * Visited set key of a canonical URL: the URL without the trailing slash of its path.
+     */
+    public String key(String url) {
+        int query = url.indexOf('?');
+        int pathEnd = query >= 0 ? query : url.length();
+        boolean slash = pathEnd > origin.length() + 1 && url.charAt(pathEnd - 1) == '/';
+        return slash ? url.substring(0, pathEnd - 1) + url.substring(pathEnd) : url;
+    }
+
+    /**
+     * Path of a canonical URL as stored in page: the part after the site URL, {@code /} for the
+     * site URL itself.
+     */
+    public String path(String url) {
+        String path = url.substring(baseUrl.length());
+        return path.isEmpty() ? "/" : path;
+    }
+
+    /**
+     * Path and query of a canonical URL, as matched by robots.txt rules.
+     */
+    public String requestPath(String url) {
+        return url.length() > origin.length() ? url.substring(origin.length()) : "/";
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public boolean isRespectRobots() {
+        return respectRobots;
+    }
+
+    private String canonicalQuery(String query) {
+        if (query.isEmpty()) {
+            return "";
+        }
+        // Links ending in an empty parameter are mostly unfilled forms, always skipped
+        if (query.endsWith("=")) {
+            return null;
+        }
+        List<String> parameters = new ArrayList<>();
+        for (String parameter : query.split("&")) {
+            if (parameter.isEmpty()) {
+                continue;
+            }
+            int equals = parameter.indexOf('=');
+            String name = equals >= 0 ? parameter.substring(0, equals) : parameter;
+            if (ignoredParameters == null || !ignoredParameters.matcher(name).matches()) {
+                parameters.add(parameter);
+            }
+        }
+        if (parameters.isEmpty()) {
+            return "";
+        }
+        if (!allowQuery) {
+            return null;
+        }
+        Collections.sort(parameters);
+        return "?" + String.join("&", parameters);
+    }
+
+    private static Parts split(String url) {
+        int fragment = url.indexOf('#');
+        if (fragment >= 0) {
+            url = url.substring(0, fragment);
+        }
+        int schemeEnd = url.indexOf("://");
+        if (schemeEnd < 0) {
+            return null;
+        }
+        String scheme = url.substring(0, schemeEnd).toLowerCase(Locale.ROOT);
+        int defaultPort = switch (scheme) {
+            case "http" -> 80;
+            case "https" -> 443;
+            default -> -1;
+        };
+        if (defaultPort < 0) {
+            return null;
+        }
+
+        int authorityStart = schemeEnd + 3;
+        int authorityEnd = authorityStart;
+        while (authorityEnd < url.length() && url.charAt(authorityEnd) != '/' && url.charAt(authorityEnd) != '?') {
+            authorityEnd++;
+        }
+        String authority = url.substring(authorityStart, authorityEnd);
+        authority = authority.substring(authority.lastIndexOf('@') + 1);
+
+        String host = authority;
+        int port = -1;
+        int colon = authority.lastIndexOf(':');
+        if (colon > authority.lastIndexOf(']')) {
+            host = authority.substring(0, colon);
+            String digits = authority.substring(colon + 1);
+            if (!digits.isEmpty()) {
+                if (digits.length() > 5 || !digits.chars().allMatch(Character::isDigit)) {
+                    return null;
+                }
+                port = Integer.parseInt(digits);
+            }
+        }
+        if (port == defaultPort) {
+            port = -1;
+        }
+        host = host.toLowerCase(Locale.ROOT);
+        if (host.endsWith(".")) {
+            host = host.substring(0, host.length() - 1);
+        }
+        if (host.isEmpty()) {
+            return null;
+        }
+
+        int queryStart = url.indexOf('?', authorityEnd);
+        String path = queryStart >= 0 ? url.substring(authorityEnd, queryStart) : url.substring(authorityEnd);
+        String query = queryStart >= 0 ? url.substring(queryStart + 1) : "";
+        return new Parts(scheme, host, port, path.isEmpty() ? "/" : path, query);
+    }
+
+    private static String collapseSlashes(String path) {
+        if (!path.contains("//")) {
+            return path;
+        }
+        StringBuilder collapsed = new StringBuilder(path.length());
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c != '/' || collapsed.isEmpty() || collapsed.charAt(collapsed.length() - 1) != '/') {
+                collapsed.append(c);
+            }
+        }
+        return collapsed.toString();
+    }
+
+    private static String trimSlash(String path) {
+        return path.length() > 1 && path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+
+    private static String stripWww(String host) {
+        return host.startsWith("www.") ? host.substring(4) : host;
+    }
+
+    private static String parameterRegex(String name) {
+        return name.endsWith("*")
+                ? Pattern.quote(name.substring(0, name.length() - 1)) + ".*"
+                : Pattern.quote(name);
+    }
+
+    private record Parts(String scheme, String host, int port, String path, String query) {
+    }
+}
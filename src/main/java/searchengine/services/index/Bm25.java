@@ -0,0 +1,35 @@
+package searchengine.services.index;
+
+/**
+ * Okapi BM25 weight of a lemma on a page, from its rank (occurrences on the page), the page
+ * length in lemma occurrences and the document frequency over the searched sites.
+ */
+final class Bm25 {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final int[] pageLengths;
+    private final double averageLength;
+
+    Bm25(int[] pageLengths, double averageLength) {
+        this.pageLengths = pageLengths;
+        this.averageLength = Math.max(1, averageLength);
+    }
+
+    static double idf(long pages, long documentFrequency) {
+        return Math.log(1 + (pages - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    double score(double idf, float rank, int pageId) {
+        int length = pageId < pageLengths.length ? pageLengths[pageId] : 0;
+        double norm = K1 * (1 - B + B * length / averageLength);
+        return idf * rank * (K1 + 1) / (rank + norm);
+    }
+
+    /**
+     * Largest score a lemma with at most {@code maxRank} occurrences can reach, on an empty page.
+     */
+    double upperBound(double idf, float maxRank) {
+        return idf * maxRank * (K1 + 1) / (maxRank + K1 * (1 - B));
+    }
+}
@@ -0,0 +1,13 @@
+package searchengine.services.index;
+
+import java.util.Map;
+
+/**
+ * Statistics of the searched sites: pages, their total length in lemma occurrences and the
+ * number of pages containing each query lemma. Lemmas absent from every page are left out.
+ */
+public record CorpusStatistics(long pages, long tokens, Map<Integer, Long> documentFrequencies) {
+    public double averagePageLength() {
+        return pages > 0 ? (double) tokens / pages : 0;
+    }
+}
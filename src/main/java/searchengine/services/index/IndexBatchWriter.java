@@ -0,0 +1,93 @@
+package searchengine.services.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Writes search_index rows with multi-row JDBC inserts. Index ids are IDENTITY-generated,
+ * which keeps Hibernate from batching {@code indexRepository.save}, so rows bypass JPA here.
+ * Rows are inserted in the caller's transaction, so they commit or roll back with their pages.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IndexBatchWriter {
+    private static final int ROWS_PER_STATEMENT = 1000;
+    private static final String INSERT_PREFIX = "INSERT INTO search_index (page_id, lemma_id, `rank`) VALUES ";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void insert(List<PageRows> pages) {
+        int rowCount = pages.stream().mapToInt(PageRows::size).sum();
+        if (rowCount == 0) {
+            return;
+        }
+
+        int[] pageIds = new int[rowCount];
+        int[] lemmaIds = new int[rowCount];
+        float[] ranks = new float[rowCount];
+        int row = 0;
+        for (PageRows page : pages) {
+            for (int i = 0; i < page.size(); i++) {
+                pageIds[row] = page.pageId();
+                lemmaIds[row] = page.lemmaIds()[i];
+                ranks[row] = page.ranks()[i];
+                row++;
+            }
+        }
+
+        long started = System.currentTimeMillis();
+        insert(pageIds, lemmaIds, ranks);
+        log.debug("Inserted {} index rows for {} pages in {} ms",
+                rowCount, pages.size(), System.currentTimeMillis() - started);
+    }
+
+    private void insert(int[] pageIds, int[] lemmaIds, float[] ranks) {
+        int fullStatements = pageIds.length / ROWS_PER_STATEMENT;
+        if (fullStatements > 0) {
+            jdbcTemplate.batchUpdate(insertSql(ROWS_PER_STATEMENT), new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    bindRows(ps, pageIds, lemmaIds, ranks, i * ROWS_PER_STATEMENT, ROWS_PER_STATEMENT);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return fullStatements;
+                }
+            });
+        }
+
+        int remainder = pageIds.length - fullStatements * ROWS_PER_STATEMENT;
+        if (remainder > 0) {
+            jdbcTemplate.update(insertSql(remainder),
+                    ps -> bindRows(ps, pageIds, lemmaIds, ranks, fullStatements * ROWS_PER_STATEMENT, remainder));
+        }
+    }
+
+    private static void bindRows(PreparedStatement ps, int[] pageIds, int[] lemmaIds, float[] ranks,
+                                 int from, int count) throws SQLException {
+        int parameter = 1;
+        for (int row = from; row < from + count; row++) {
+            ps.setInt(parameter++, pageIds[row]);
+            ps.setInt(parameter++, lemmaIds[row]);
+            ps.setFloat(parameter++, ranks[row]);
+        }
+    }
+
+    private static String insertSql(int rows) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + rows * 8);
+        sql.append(INSERT_PREFIX);
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "(?,?,?)" : ",(?,?,?)");
+        }
+        return sql.toString();
+    }
+}
@@ -0,0 +1,448 @@
+package searchengine.services.index;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+import searchengine.repository.IndexRepository;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory copy of the search_index table: site id -> lemma id -> pages of the site containing it.
+ * Built from the database on startup and kept current by the indexers, together with the corpus
+ * statistics ranking needs: pages per site, page lengths and document frequencies (the sizes of
+ * the posting lists). An all-sites search runs every site on its own thread and merges the
+ * per-site top pages.
+ */
+@Slf4j
+@Component
+public class InvertedIndex {
+    private static final int LOAD_CHUNK_SIZE = 50_000;
+    private static final int VERIFY_ATTEMPTS = 3;
+
+    private final IndexRepository indexRepository;
+    private final ExecutorService siteSearchPool;
+
+    private final Map<Integer, SiteIndex> sites = new HashMap<>();
+    private final Map<Integer, IndexedPage> pages = new HashMap<>();
+    // Page id -> sum of the page's ranks, page ids are IDENTITY-generated and dense
+    private int[] pageLengths = new int[1024];
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready = false;
+    // Pages changed by writers while the loader runs. Their updates already hold the committed
+    // rows, so the loader skips what it reads of them. Both guarded by the write lock.
+    private boolean loading = true;
+    private final Set<Integer> changedWhileLoading = new HashSet<>();
+    // Incremented by every write, guarded by the write lock
+    private long modifications;
+
+    public InvertedIndex(IndexRepository indexRepository, SearchSettings settings) {
+        this.indexRepository = indexRepository;
+        int threads = settings.getSearchThreads() > 0
+                ? settings.getSearchThreads()
+                : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.siteSearchPool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "site-search-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        siteSearchPool.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Thread loader = new Thread(this::loadFromDatabase, "inverted-index-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void addPage(int siteId, int pageId, int[] lemmaIds, float[] ranks) {
+        lock.writeLock().lock();
+        try {
+            removePageLocked(pageId);
+            SiteIndex site = sites.computeIfAbsent(siteId, id -> new SiteIndex());
+            int length = 0;
+            for (int i = 0; i < lemmaIds.length; i++) {
+                site.postings.computeIfAbsent(lemmaIds[i], id -> new PostingList()).put(pageId, ranks[i]);
+                length += (int) ranks[i];
+            }
+            pages.put(pageId, new IndexedPage(siteId, lemmaIds.clone()));
+            site.pages++;
+            site.tokens += length;
+            addPageLength(pageId, length);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removePage(int pageId) {
+        lock.writeLock().lock();
+        try {
+            removePageLocked(pageId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removePages(Collection<Integer> pageIds) {
+        lock.writeLock().lock();
+        try {
+            pageIds.forEach(this::removePageLocked);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Current statistics of a site, or of all sites when {@code siteId} is null, for the given
+     * lemmas. Read from memory, so the search planner needs no COUNT queries.
+     */
+    public CorpusStatistics statistics(Integer siteId, Collection<Integer> lemmaIds) {
+        lock.readLock().lock();
+        try {
+            List<SiteIndex> searched = searchedSites(siteId);
+            long pageCount = 0;
+            long tokens = 0;
+            for (SiteIndex site : searched) {
+                pageCount += site.pages;
+                tokens += site.tokens;
+            }
+            Map<Integer, Long> frequencies = new HashMap<>();
+            for (Integer lemmaId : lemmaIds) {
+                long frequency = documentFrequency(searched, lemmaId);
+                if (frequency > 0) {
+                    frequencies.put(lemmaId, frequency);
+                }
+            }
+            return new CorpusStatistics(pageCount, tokens, frequencies);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the {@code k} best pages of a site, or of all sites when {@code siteId} is null, by
+     * BM25 over the searched sites. Pages must contain at least {@code minMatch} of the required
+     * lemmas, all of them when {@code minMatch} is not less than their number; optional lemmas
+     * only add to the score.
+     */
+    public ScoredPages search(Integer siteId, int[] requiredLemmaIds, int[] optionalLemmaIds, int minMatch, int k) {
+        lock.readLock().lock();
+        try {
+            List<SiteIndex> searched = searchedSites(siteId);
+            Query query = query(searched, requiredLemmaIds, optionalLemmaIds, minMatch, k);
+            if (searched.size() == 1) {
+                return query.run(searched.get(0));
+            }
+
+            // Workers read the postings while this thread holds the read lock, writers wait for all of them
+            List<Future<ScoredPages>> results = new ArrayList<>(searched.size());
+            for (SiteIndex site : searched) {
+                results.add(siteSearchPool.submit(() -> query.run(site)));
+            }
+            List<ScoredPages> found = new ArrayList<>(results.size());
+            for (Future<ScoredPages> result : results) {
+                found.add(await(result, results));
+            }
+            return ScoredPages.merge(found, k);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<SiteIndex> searchedSites(Integer siteId) {
+        if (siteId == null) {
+            return new ArrayList<>(sites.values());
+        }
+        SiteIndex site = sites.get(siteId);
+        return site != null ? List.of(site) : List.of();
+    }
+
+    /**
+     * Scores are computed from statistics of all searched sites, so pages of different sites
+     * compare when the per-site results are merged.
+     */
+    private Query query(List<SiteIndex> searched, int[] requiredLemmaIds, int[] optionalLemmaIds,
+                        int minMatch, int k) {
+        long pageCount = 0;
+        long tokens = 0;
+        for (SiteIndex site : searched) {
+            pageCount += site.pages;
+            tokens += site.tokens;
+        }
+        Bm25 bm25 = new Bm25(pageLengths, pageCount > 0 ? (double) tokens / pageCount : 0);
+        return new Query(requiredLemmaIds, idfs(searched, pageCount, requiredLemmaIds),
+                optionalLemmaIds, idfs(searched, pageCount, optionalLemmaIds), minMatch, k, bm25);
+    }
+
+    private static double[] idfs(List<SiteIndex> searched, long pageCount, int[] lemmaIds) {
+        double[] idfs = new double[lemmaIds.length];
+        for (int i = 0; i < lemmaIds.length; i++) {
+            idfs[i] = Bm25.idf(pageCount, documentFrequency(searched, lemmaIds[i]));
+        }
+        return idfs;
+    }
+
+    private static long documentFrequency(List<SiteIndex> searched, int lemmaId) {
+        long frequency = 0;
+        for (SiteIndex site : searched) {
+            PostingList list = site.postings.get(lemmaId);
+            if (list != null) {
+                frequency += list.size();
+            }
+        }
+        return frequency;
+    }
+
+    private static ScoredPages await(Future<ScoredPages> result, List<Future<ScoredPages>> all) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            all.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Search interrupted", e);
+        } catch (ExecutionException e) {
+            all.forEach(future -> future.cancel(true));
+            throw new IllegalStateException("Site search failed", e.getCause());
+        }
+    }
+
+    private void removePageLocked(int pageId) {
+        modifications++;
+        if (loading) {
+            changedWhileLoading.add(pageId);
+        }
+        IndexedPage page = pages.remove(pageId);
+        if (page == null) {
+            return;
+        }
+        SiteIndex site = sites.get(page.siteId());
+        for (int lemmaId : page.lemmaIds()) {
+            PostingList list = site.postings.get(lemmaId);
+            if (list != null && list.remove(pageId) && list.size() == 0) {
+                site.postings.remove(lemmaId);
+            }
+        }
+        site.pages--;
+        site.tokens -= pageLengths[pageId];
+        pageLengths[pageId] = 0;
+    }
+
+    private void addPageLength(int pageId, int length) {
+        if (pageId >= pageLengths.length) {
+            pageLengths = Arrays.copyOf(pageLengths, Math.max(pageId + 1, pageLengths.length * 2));
+        }
+        pageLengths[pageId] += length;
+    }
+
+    void loadFromDatabase() {
+        long started = System.currentTimeMillis();
+        int lastId = 0;
+        long rows = 0;
+
+        try {
+            List<Object[]> chunk;
+            do {
+                chunk = indexRepository.findRowsAfter(lastId, PageRequest.of(0, LOAD_CHUNK_SIZE));
+                lock.writeLock().lock();
+                try {
+                    lastId = loadChunk(chunk, lastId);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                rows += chunk.size();
+            } while (chunk.size() == LOAD_CHUNK_SIZE);
+
+            lock.writeLock().lock();
+            try {
+                ready = true;
+                log.info("Inverted index loaded: {} rows, {} sites, {} pages, {} changed while loading, in {} ms",
+                        rows, sites.size(), pages.size(), changedWhileLoading.size(),
+                        System.currentTimeMillis() - started);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            verifyTotals();
+        } catch (Exception e) {
+            log.error("Failed to load inverted index, search falls back to database queries", e);
+        } finally {
+            lock.writeLock().lock();
+            try {
+                loading = false;
+                changedWhileLoading.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Compares the pages and tokens of every site with the totals of search_index. A check that
+     * overlaps a write is repeated, since the database and memory may then differ by that write.
+     * Returns false and logs the sites that differ when the totals still do not match.
+     */
+    boolean verifyTotals() {
+        for (int attempt = 0; attempt < VERIFY_ATTEMPTS; attempt++) {
+            long before = modificationCount();
+            List<Object[]> totals = indexRepository.siteTotals();
+            lock.readLock().lock();
+            try {
+                List<String> mismatches = mismatches(totals);
+                if (mismatches.isEmpty()) {
+                    return true;
+                }
+                if (modifications == before && attempt == VERIFY_ATTEMPTS - 1) {
+                    log.warn("Inverted index differs from search_index: {}", String.join("; ", mismatches));
+                    return false;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        log.warn("Inverted index totals not verified, the index kept changing during the check");
+        return false;
+    }
+
+    private long modificationCount() {
+        lock.readLock().lock();
+        try {
+            return modifications;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<String> mismatches(List<Object[]> totals) {
+        List<String> mismatches = new ArrayList<>();
+        Set<Integer> checked = new HashSet<>();
+        for (Object[] row : totals) {
+            int siteId = ((Number) row[0]).intValue();
+            long pageCount = ((Number) row[1]).longValue();
+            long tokens = Math.round(((Number) row[2]).doubleValue());
+            SiteIndex site = sites.get(siteId);
+            long memoryPages = site != null ? site.pages : 0;
+            long memoryTokens = site != null ? site.tokens : 0;
+            if (memoryPages != pageCount || memoryTokens != tokens) {
+                mismatches.add("site " + siteId + ": " + memoryPages + " pages, " + memoryTokens
+                        + " tokens in memory, " + pageCount + " pages, " + tokens + " tokens in database");
+            }
+            checked.add(siteId);
+        }
+        sites.forEach((siteId, site) -> {
+            if (!checked.contains(siteId) && site.pages != 0) {
+                mismatches.add("site " + siteId + ": " + site.pages + " pages in memory, none in database");
+            }
+        });
+        return mismatches;
+    }
+
+    private int loadChunk(List<Object[]> chunk, int lastId) {
+        // Rows of one page are written together, so they mostly arrive as a contiguous run
+        int currentPage = -1;
+        int currentSite = -1;
+        int[] buffer = new int[64];
+        int buffered = 0;
+
+        for (Object[] row : chunk) {
+            lastId = (Integer) row[0];
+            int pageId = (Integer) row[1];
+            if (changedWhileLoading.contains(pageId)) {
+                continue;
+            }
+            int siteId = (Integer) row[2];
+            int lemmaId = (Integer) row[3];
+            float rank = (Float) row[4];
+            SiteIndex site = sites.computeIfAbsent(siteId, id -> new SiteIndex());
+            site.postings.computeIfAbsent(lemmaId, id -> new PostingList()).put(pageId, rank);
+            site.tokens += (int) rank;
+            addPageLength(pageId, (int) rank);
+
+            if (pageId != currentPage) {
+                appendPageLemmas(currentSite, currentPage, buffer, buffered);
+                currentPage = pageId;
+                currentSite = siteId;
+                buffered = 0;
+            }
+            if (buffered == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffered * 2);
+            }
+            buffer[buffered++] = lemmaId;
+        }
+        appendPageLemmas(currentSite, currentPage, buffer, buffered);
+        return lastId;
+    }
+
+    private void appendPageLemmas(int siteId, int pageId, int[] buffer, int length) {
+        if (length == 0) {
+            return;
+        }
+        IndexedPage existing = pages.get(pageId);
+        if (existing == null) {
+            pages.put(pageId, new IndexedPage(siteId, Arrays.copyOf(buffer, length)));
+            sites.get(siteId).pages++;
+            return;
+        }
+        int[] merged = Arrays.copyOf(existing.lemmaIds(), existing.lemmaIds().length + length);
+        System.arraycopy(buffer, 0, merged, existing.lemmaIds().length, length);
+        pages.put(pageId, new IndexedPage(siteId, merged));
+    }
+
+    private static class SiteIndex {
+        private final Map<Integer, PostingList> postings = new HashMap<>();
+        private int pages;
+        private long tokens;
+    }
+
+    private record IndexedPage(int siteId, int[] lemmaIds) {
+    }
+
+    /**
+     * One search with its BM25 weights, run against each searched site.
+     */
+    private record Query(int[] requiredLemmaIds, double[] requiredIdfs,
+                         int[] optionalLemmaIds, double[] optionalIdfs,
+                         int minMatch, int k, Bm25 bm25) {
+        ScoredPages run(SiteIndex site) {
+            TermCursor[] required = cursors(site, requiredLemmaIds, requiredIdfs);
+            TermCursor[] optional = cursors(site, optionalLemmaIds, optionalIdfs);
+            boolean conjunctive = minMatch >= requiredLemmaIds.length;
+            if (required.length == 0 || conjunctive && required.length < requiredLemmaIds.length) {
+                return ScoredPages.EMPTY;
+            }
+            return conjunctive
+                    ? TopKSearch.conjunctive(required, optional, k)
+                    : TopKSearch.disjunctive(required, optional, minMatch, k);
+        }
+
+        private TermCursor[] cursors(SiteIndex site, int[] lemmaIds, double[] idfs) {
+            List<TermCursor> cursors = new ArrayList<>(lemmaIds.length);
+            for (int i = 0; i < lemmaIds.length; i++) {
+                PostingList list = site.postings.get(lemmaIds[i]);
+                if (list != null && list.size() > 0) {
+                    cursors.add(new TermCursor(list, idfs[i], bm25));
+                }
+            }
+            return cursors.toArray(new TermCursor[0]);
+        }
+    }
+}
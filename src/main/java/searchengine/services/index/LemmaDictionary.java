@@ -0,0 +1,96 @@
+package searchengine.services.index;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.repository.LemmaRepository;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lemma text -> global lemma id, cached in memory. Ids never change once assigned and dictionary
+ * rows are never deleted, so cached entries stay valid for the life of the process.
+ */
+@Component
+public class LemmaDictionary {
+    private static final int CHUNK_SIZE = 1000;
+
+    private final LemmaRepository lemmaRepository;
+    private final JdbcTemplate jdbcTemplate;
+    // New lemmas are committed on their own, a rolled back page must not leave ids that do not exist
+    private final TransactionTemplate newTransaction;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    public LemmaDictionary(LemmaRepository lemmaRepository,
+                           JdbcTemplate jdbcTemplate,
+                           PlatformTransactionManager transactionManager) {
+        this.lemmaRepository = lemmaRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Returns ids of the lemmas that are in the dictionary, unknown lemmas are left out.
+     */
+    public Map<String, Integer> find(Collection<String> lemmas) {
+        Map<String, Integer> found = new HashMap<>(lemmas.size() * 2);
+        List<String> missing = new ArrayList<>();
+        for (String lemma : lemmas) {
+            Integer id = ids.get(lemma);
+            if (id != null) {
+                found.put(lemma, id);
+            } else {
+                missing.add(lemma);
+            }
+        }
+        if (!missing.isEmpty()) {
+            found.putAll(load(missing));
+        }
+        return found;
+    }
+
+    /**
+     * Returns ids of all the lemmas, adding the ones the dictionary does not have yet.
+     */
+    public Map<String, Integer> intern(Collection<String> lemmas) {
+        Map<String, Integer> found = find(lemmas);
+        if (found.size() == lemmas.size()) {
+            return found;
+        }
+
+        List<String> missing = lemmas.stream().filter(lemma -> !found.containsKey(lemma)).distinct().toList();
+        newTransaction.executeWithoutResult(status -> {
+            for (int from = 0; from < missing.size(); from += CHUNK_SIZE) {
+                List<String> chunk = missing.subList(from, Math.min(missing.size(), from + CHUNK_SIZE));
+                // IGNORE keeps concurrent writers adding the same lemma from failing on the unique index
+                jdbcTemplate.update(insertSql(chunk.size()), chunk.toArray());
+            }
+        });
+        found.putAll(load(missing));
+        return found;
+    }
+
+    private Map<String, Integer> load(List<String> lemmas) {
+        Map<String, Integer> loaded = new HashMap<>(lemmas.size() * 2);
+        for (int from = 0; from < lemmas.size(); from += CHUNK_SIZE) {
+            List<String> chunk = lemmas.subList(from, Math.min(lemmas.size(), from + CHUNK_SIZE));
+            for (Object[] row : lemmaRepository.findIdsByLemmaIn(chunk)) {
+                loaded.put((String) row[0], (Integer) row[1]);
+            }
+        }
+        ids.putAll(loaded);
+        return loaded;
+    }
+
+    private static String insertSql(int rows) {
+        StringBuilder sql = new StringBuilder("INSERT IGNORE INTO lemma (lemma) VALUES ");
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "(?)" : ",(?)");
+        }
+        return sql.toString();
+    }
+}
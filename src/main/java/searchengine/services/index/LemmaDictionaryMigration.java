@@ -0,0 +1,82 @@
+package searchengine.services.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Turns the legacy per-site lemma table into the global dictionary. Frequencies move to
+ * site_lemma, search_index rows are pointed at the surviving row of each lemma text and the
+ * duplicates are deleted. ddl-auto=update never drops columns, and the NOT NULL site_id and
+ * frequency columns would reject new dictionary rows.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LemmaDictionaryMigration implements ApplicationRunner {
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!hasColumn("lemma", "site_id")) {
+            return;
+        }
+
+        log.info("Merging per-site lemmas into the global dictionary");
+        // Collation first, otherwise lemmas differing only in "е"/"ё" would be merged
+        jdbcTemplate.execute("ALTER TABLE lemma MODIFY lemma " +
+                "VARCHAR(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL");
+        jdbcTemplate.execute("DROP TEMPORARY TABLE IF EXISTS lemma_merge");
+        jdbcTemplate.execute("CREATE TEMPORARY TABLE lemma_merge (PRIMARY KEY (old_id)) " +
+                "SELECT l.id AS old_id, k.id AS new_id FROM lemma l " +
+                "JOIN (SELECT lemma, MIN(id) AS id FROM lemma GROUP BY lemma) k ON k.lemma = l.lemma");
+
+        int frequencies = jdbcTemplate.update("INSERT IGNORE INTO site_lemma (site_id, lemma_id, frequency) " +
+                "SELECT l.site_id, m.new_id, l.frequency FROM lemma l " +
+                "JOIN lemma_merge m ON m.old_id = l.id WHERE l.frequency > 0");
+        int rows = jdbcTemplate.update("UPDATE search_index i JOIN lemma_merge m ON m.old_id = i.lemma_id " +
+                "SET i.lemma_id = m.new_id WHERE m.old_id <> m.new_id");
+        int duplicates = jdbcTemplate.update("DELETE l FROM lemma l " +
+                "JOIN lemma_merge m ON m.old_id = l.id WHERE m.old_id <> m.new_id");
+        jdbcTemplate.execute("DROP TEMPORARY TABLE lemma_merge");
+
+        if (hasForeignKey("lemma", "fk_lemma_site")) {
+            jdbcTemplate.execute("ALTER TABLE lemma DROP FOREIGN KEY fk_lemma_site");
+        }
+        for (String index : new String[]{"idx_lemma_lemma_site", "idx_lemma_frequency", "fk_lemma_site"}) {
+            if (hasIndex("lemma", index)) {
+                jdbcTemplate.execute("ALTER TABLE lemma DROP INDEX " + index);
+            }
+        }
+        jdbcTemplate.execute("ALTER TABLE lemma DROP COLUMN site_id, DROP COLUMN frequency");
+        if (!hasIndex("lemma", "idx_lemma_lemma")) {
+            jdbcTemplate.execute("ALTER TABLE lemma ADD UNIQUE INDEX idx_lemma_lemma (lemma)");
+        }
+        log.info("Moved {} lemma frequencies to site_lemma, repointed {} index rows, removed {} duplicate lemmas",
+                frequencies, rows, duplicates);
+    }
+
+    private boolean hasColumn(String table, String column) {
+        return count("SELECT COUNT(*) FROM information_schema.columns " +
+                "WHERE table_schema = DATABASE() AND table_name = ? AND column_name = ?", table, column);
+    }
+
+    private boolean hasIndex(String table, String index) {
+        return count("SELECT COUNT(*) FROM information_schema.statistics " +
+                "WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ?", table, index);
+    }
+
+    private boolean hasForeignKey(String table, String constraint) {
+        return count("SELECT COUNT(*) FROM information_schema.table_constraints " +
+                "WHERE table_schema = DATABASE() AND table_name = ? AND constraint_name = ? " +
+                "AND constraint_type = 'FOREIGN KEY'", table, constraint);
+    }
+
+    private boolean count(String sql, Object... args) {
+        Integer count = jdbcTemplate.queryForObject(sql, Integer.class, args);
+        return count != null && count > 0;
+    }
+}
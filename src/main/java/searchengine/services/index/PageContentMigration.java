@@ -0,0 +1,56 @@
+package searchengine.services.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves bodies from the legacy page.content column into page_content and drops the column.
+ * ddl-auto=update never drops columns, and the NOT NULL column would reject new pages.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PageContentMigration implements ApplicationRunner {
+    private static final int CHUNK_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PageContentStore pageContentStore;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Integer legacyColumns = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.columns " +
+                        "WHERE table_schema = DATABASE() AND table_name = 'page' AND column_name = 'content'",
+                Integer.class);
+        if (legacyColumns == null || legacyColumns == 0) {
+            return;
+        }
+
+        log.info("Moving page bodies into page_content");
+        int lastId = 0;
+        int moved = 0;
+        List<Map<String, Object>> chunk;
+        do {
+            chunk = jdbcTemplate.queryForList(
+                    "SELECT p.id, p.content FROM page p LEFT JOIN page_content c ON c.page_id = p.id " +
+                            "WHERE c.page_id IS NULL AND p.id > ? ORDER BY p.id LIMIT " + CHUNK_SIZE,
+                    lastId);
+            for (Map<String, Object> row : chunk) {
+                lastId = ((Number) row.get("id")).intValue();
+                Object content = row.get("content");
+                pageContentStore.save(lastId, content != null ? content.toString() : "", null, null);
+            }
+            moved += chunk.size();
+        } while (chunk.size() == CHUNK_SIZE);
+
+        jdbcTemplate.execute("ALTER TABLE page DROP COLUMN content");
+        log.info("Moved {} page bodies, dropped page.content", moved);
+    }
+}
@@ -0,0 +1,65 @@
+package searchengine.services.index;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import searchengine.repository.PageContentRepository;
+import searchengine.utils.Compression;
+import searchengine.utils.lemmatization.TokenOffsets;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Stores page HTML deflate-compressed in page_content. Bodies are only read when a page
+ * is re-parsed; search results are rendered from the precomputed text and token offsets.
+ */
+@Component
+@RequiredArgsConstructor
+public class PageContentStore {
+    private static final String UPSERT_SQL =
+            "INSERT INTO page_content (page_id, html, text, offsets) VALUES (?, ?, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE html = VALUES(html), text = VALUES(text), offsets = VALUES(offsets)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PageContentRepository pageContentRepository;
+
+    /**
+     * @param compressedText page text already deflated while it was streamed, may be {@code null}
+     */
+    public void save(int pageId, String html, byte[] compressedText, TokenOffsets offsets) {
+        jdbcTemplate.update(UPSERT_SQL,
+                pageId,
+                Compression.deflate(html),
+                compressedText,
+                offsets != null ? Compression.deflate(offsets.encode()) : null);
+    }
+
+    public Optional<String> load(int pageId) {
+        return pageContentRepository.findById(pageId)
+                .map(content -> Compression.inflateToString(content.getHtml()));
+    }
+
+    /**
+     * Loads text and token offsets of the pages in one query. Pages indexed before
+     * texts were stored are missing from the result.
+     */
+    public Map<Integer, PageText> loadTexts(Collection<Integer> pageIds) {
+        Map<Integer, PageText> texts = new HashMap<>();
+        if (pageIds.isEmpty()) {
+            return texts;
+        }
+        for (Object[] row : pageContentRepository.findTextsByPageIdIn(pageIds)) {
+            byte[] text = (byte[]) row[1];
+            byte[] offsets = (byte[]) row[2];
+            if (text != null && offsets != null) {
+                texts.put((Integer) row[0], new PageText(
+                        Compression.inflateToString(text),
+                        TokenOffsets.decode(Compression.inflate(offsets))));
+            }
+        }
+        return texts;
+    }
+}
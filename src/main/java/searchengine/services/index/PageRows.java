@@ -0,0 +1,10 @@
+package searchengine.services.index;
+
+/**
+ * search_index rows of a single page, lemma ids and ranks are parallel arrays.
+ */
+public record PageRows(int siteId, int pageId, int[] lemmaIds, float[] ranks) {
+    public int size() {
+        return lemmaIds.length;
+    }
+}
@@ -0,0 +1,9 @@
+package searchengine.services.index;
+
+import searchengine.utils.lemmatization.TokenOffsets;
+
+/**
+ * Plain text of a page with the offsets of its tokens, as prepared at index time.
+ */
+public record PageText(String text, TokenOffsets offsets) {
+}
@@ -0,0 +1,181 @@
+package searchengine.services.index;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.repository.IndexRepository;
+import searchengine.repository.PageRepository;
+import searchengine.repository.SiteLemmaRepository;
+import searchengine.utils.lemmatization.LemmaCounts;
+
+import java.util.*;
+
+/**
+ * Stores pages, their lemma frequencies and their search_index rows in one transaction per call.
+ * Lemma ids come from the global {@link LemmaDictionary} and per-site frequencies are raised with
+ * one batched upsert per call instead of per page. The in-memory {@link InvertedIndex} and the
+ * result cache only change once the transaction has committed.
+ * <p>
+ * Writes are serialized: page has no unique key on site and path, so two writers storing the
+ * same new page at once would both insert it.
+ */
+@Component
+@RequiredArgsConstructor
+public class PageWriter {
+    private static final int MAX_TITLE_LENGTH = 512;
+    private static final String FREQUENCY_UPSERT = "INSERT INTO site_lemma (site_id, lemma_id, frequency) " +
+            "VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE frequency = frequency + VALUES(frequency)";
+
+    private final PageRepository pageRepository;
+    private final SiteLemmaRepository siteLemmaRepository;
+    private final IndexRepository indexRepository;
+    private final InvertedIndex invertedIndex;
+    private final PageContentStore pageContentStore;
+    private final SearchResultCache searchResultCache;
+    private final LemmaDictionary lemmaDictionary;
+    private final IndexBatchWriter indexBatchWriter;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Object writeLock = new Object();
+
+    /**
+     * Returns the stored index rows of every page, in the order of {@code pages}.
+     */
+    public List<PageRows> write(List<ParsedPage> pages) {
+        Set<String> allLemmas = new HashSet<>();
+        pages.forEach(page -> allLemmas.addAll(Arrays.asList(page.lemmas().lemmas())));
+        Map<String, Integer> lemmaIds = lemmaDictionary.intern(allLemmas);
+
+        synchronized (writeLock) {
+            return transactionTemplate.execute(status -> write(pages, lemmaIds));
+        }
+    }
+
+    private List<PageRows> write(List<ParsedPage> pages, Map<String, Integer> lemmaIds) {
+        List<Page> saved = new ArrayList<>(pages.size());
+        for (ParsedPage page : pages) {
+            saved.add(savePage(page));
+        }
+
+        List<PageRows> rows = new ArrayList<>(pages.size());
+        for (int i = 0; i < pages.size(); i++) {
+            ParsedPage page = pages.get(i);
+            LemmaCounts counts = page.lemmas();
+            int[] ids = new int[counts.size()];
+            float[] ranks = new float[counts.size()];
+            for (int n = 0; n < counts.size(); n++) {
+                ids[n] = lemmaIds.get(counts.lemmas()[n]);
+                ranks[n] = counts.counts()[n];
+            }
+            rows.add(new PageRows(page.site().getId(), saved.get(i).getId(), ids, ranks));
+        }
+        updateFrequencies(rows);
+        indexBatchWriter.insert(rows);
+        // addPage replaces what memory holds for a rewritten page
+        afterCommit(() -> {
+            rows.forEach(page -> invertedIndex.addPage(page.siteId(), page.pageId(), page.lemmaIds(), page.ranks()));
+            searchResultCache.invalidate(rows.stream().map(PageRows::siteId).toList());
+        });
+        return rows;
+    }
+
+    private Page savePage(ParsedPage parsed) {
+        Page page = pageRepository.findByPathAndSite(parsed.path(), parsed.site())
+                .map(existingPage -> {
+                    siteLemmaRepository.decrementFrequencyForPage(parsed.site().getId(), existingPage.getId());
+                    indexRepository.deleteByPage(existingPage);
+                    return existingPage;
+                })
+                .orElseGet(() -> {
+                    Page newPage = new Page();
+                    newPage.setSite(parsed.site());
+                    newPage.setPath(parsed.path());
+                    return newPage;
+                });
+
+        page.setCode(parsed.code());
+        page.setTitle(parsed.title() != null && parsed.title().length() > MAX_TITLE_LENGTH
+                ? parsed.title().substring(0, MAX_TITLE_LENGTH)
+                : parsed.title());
+        page.setEtag(parsed.etag());
+        page.setLastModified(parsed.lastModified());
+        page.setContentHash(parsed.contentHash());
+        Page saved = pageRepository.save(page);
+        pageContentStore.save(saved.getId(), parsed.content(), parsed.text(), parsed.offsets());
+        return saved;
+    }
+
+    /**
+     * Removes pages with their index rows and drops lemmas no page refers to any more.
+     */
+    public void deletePages(Site site, Collection<Integer> pageIds) {
+        if (pageIds.isEmpty()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            for (Integer pageId : pageIds) {
+                Page page = pageRepository.getReferenceById(pageId);
+                siteLemmaRepository.decrementFrequencyForPage(site.getId(), pageId);
+                indexRepository.deleteByPage(page);
+            }
+            pageRepository.deleteAllByIdInBatch(pageIds);
+            siteLemmaRepository.deleteUnusedBySite(site.getId());
+            afterCommit(() -> {
+                invertedIndex.removePages(pageIds);
+                searchResultCache.invalidate(site.getId());
+            });
+        });
+    }
+
+    /**
+     * Removes every page of the site with its index rows and lemma frequencies, all or nothing.
+     */
+    public void clearSite(Site site) {
+        if (site.getId() == null) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Integer> pageIds = pageRepository.findIdsBySite(site);
+            indexRepository.deleteBySite(site);
+            siteLemmaRepository.deleteBySite(site.getId());
+            pageRepository.deleteBySite(site);
+            afterCommit(() -> {
+                invertedIndex.removePages(pageIds);
+                searchResultCache.invalidate(site.getId());
+            });
+        });
+    }
+
+    /**
+     * Runs the action once the current transaction has committed, never after a rollback.
+     */
+    private static void afterCommit(Runnable action) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Adds one to the site frequency of every lemma of every page.
+     */
+    private void updateFrequencies(List<PageRows> pages) {
+        Map<Long, Integer> pageCounts = new HashMap<>();
+        for (PageRows page : pages) {
+            for (int lemmaId : page.lemmaIds()) {
+                pageCounts.merge(((long) page.siteId() << 32) | lemmaId, 1, Integer::sum);
+            }
+        }
+
+        List<Object[]> rows = new ArrayList<>(pageCounts.size());
+        pageCounts.forEach((key, count) -> rows.add(new Object[]{(int) (key >>> 32), key.intValue(), count}));
+        jdbcTemplate.batchUpdate(FREQUENCY_UPSERT, rows);
+    }
+}
@@ -0,0 +1,24 @@
+package searchengine.services.index;
+
+import searchengine.model.Site;
+import searchengine.utils.lemmatization.LemmaCounts;
+import searchengine.utils.lemmatization.TokenOffsets;
+
+/**
+ * A fetched and lemmatized page ready to be stored. {@code etag} and {@code lastModified} are the
+ * response validators used for conditional requests on the next incremental crawl;
+ * {@code title}, {@code text} (deflated) and {@code offsets} let search build snippets without
+ * parsing HTML.
+ */
+public record ParsedPage(Site site,
+                         String path,
+                         int code,
+                         String content,
+                         LemmaCounts lemmas,
+                         String etag,
+                         String lastModified,
+                         String contentHash,
+                         String title,
+                         byte[] text,
+                         TokenOffsets offsets) {
+}
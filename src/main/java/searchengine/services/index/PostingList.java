@@ -0,0 +1,107 @@
+package searchengine.services.index;
+
+import java.util.Arrays;
+
+/**
+ * Posting list of one lemma: page ids sorted ascending with parallel ranks.
+ * Not thread-safe, access is guarded by {@link InvertedIndex}.
+ */
+public class PostingList {
+    private static final int INITIAL_CAPACITY = 4;
+
+    private int[] pageIds = new int[INITIAL_CAPACITY];
+    private float[] ranks = new float[INITIAL_CAPACITY];
+    private int size;
+    // Upper bound of the ranks in the list, not lowered on removal
+    private float maxRank;
+
+    public int size() {
+        return size;
+    }
+
+    public float maxRank() {
+        return maxRank;
+    }
+
+    public int pageAt(int position) {
+        return pageIds[position];
+    }
+
+    public float rankAt(int position) {
+        return ranks[position];
+    }
+
+    public void put(int pageId, float rank) {
+        maxRank = Math.max(maxRank, rank);
+        // Page ids are IDENTITY-generated, so new pages almost always go to the tail
+        if (size == 0 || pageIds[size - 1] < pageId) {
+            ensureCapacity(size + 1);
+            pageIds[size] = pageId;
+            ranks[size] = rank;
+            size++;
+            return;
+        }
+
+        int position = Arrays.binarySearch(pageIds, 0, size, pageId);
+        if (position >= 0) {
+            ranks[position] = rank;
+            return;
+        }
+
+        int insertAt = -position - 1;
+        ensureCapacity(size + 1);
+        System.arraycopy(pageIds, insertAt, pageIds, insertAt + 1, size - insertAt);
+        System.arraycopy(ranks, insertAt, ranks, insertAt + 1, size - insertAt);
+        pageIds[insertAt] = pageId;
+        ranks[insertAt] = rank;
+        size++;
+    }
+
+    public boolean remove(int pageId) {
+        int position = Arrays.binarySearch(pageIds, 0, size, pageId);
+        if (position < 0) {
+            return false;
+        }
+        System.arraycopy(pageIds, position + 1, pageIds, position, size - position - 1);
+        System.arraycopy(ranks, position + 1, ranks, position, size - position - 1);
+        size--;
+        return true;
+    }
+
+    /**
+     * Finds the first position at or after {@code from} whose page id is not less than
+     * {@code pageId}, probing 1, 2, 4... elements ahead before a binary search.
+     * Returns {@link #size()} if there is no such position.
+     */
+    public int advance(int from, int pageId) {
+        if (from >= size || pageIds[from] >= pageId) {
+            return from;
+        }
+
+        int step = 1;
+        int low = from;
+        int high = from + step;
+        while (high < size && pageIds[high] < pageId) {
+            low = high;
+            step <<= 1;
+            high = from + step;
+        }
+        if (high >= size) {
+            high = size - 1;
+            if (pageIds[high] < pageId) {
+                return size;
+            }
+        }
+
+        int position = Arrays.binarySearch(pageIds, low + 1, high + 1, pageId);
+        return position >= 0 ? position : -position - 1;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > pageIds.length) {
+            int newCapacity = Math.max(capacity, pageIds.length + (pageIds.length >> 1));
+            pageIds = Arrays.copyOf(pageIds, newCapacity);
+            ranks = Arrays.copyOf(ranks, newCapacity);
+        }
+    }
+}
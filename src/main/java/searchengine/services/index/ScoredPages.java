@@ -0,0 +1,56 @@
+package searchengine.services.index;
+
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Pages matched by a query ordered by descending relevance, positions in both arrays correspond.
+ * {@code total} counts every matching page and may exceed the number of pages returned.
+ */
+public record ScoredPages(int[] pageIds, double[] scores, int total) {
+    public static final ScoredPages EMPTY = new ScoredPages(new int[0], new double[0], 0);
+
+    public int size() {
+        return pageIds.length;
+    }
+
+    /**
+     * Merges results of disjoint page sets, e.g. of different sites, into the {@code k} best pages
+     * with a k-way heap merge. Ties keep the ascending page id order of a single search.
+     */
+    static ScoredPages merge(List<ScoredPages> parts, int k) {
+        int total = 0;
+        int available = 0;
+        for (ScoredPages part : parts) {
+            total += part.total();
+            available += part.size();
+        }
+        int size = Math.min(Math.max(0, k), available);
+        int[] pageIds = new int[size];
+        double[] scores = new double[size];
+
+        // Heap of parts ordered by their next page, positions[p] is the next unread page of part p
+        int[] positions = new int[parts.size()];
+        PriorityQueue<Integer> heap = new PriorityQueue<>(Math.max(1, parts.size()), (a, b) -> {
+            ScoredPages left = parts.get(a);
+            ScoredPages right = parts.get(b);
+            int byScore = Double.compare(right.scores[positions[b]], left.scores[positions[a]]);
+            return byScore != 0 ? byScore : Integer.compare(left.pageIds[positions[a]], right.pageIds[positions[b]]);
+        });
+        for (int p = 0; p < parts.size(); p++) {
+            if (parts.get(p).size() > 0) {
+                heap.add(p);
+            }
+        }
+        for (int n = 0; n < size; n++) {
+            int p = heap.poll();
+            ScoredPages part = parts.get(p);
+            pageIds[n] = part.pageIds[positions[p]];
+            scores[n] = part.scores[positions[p]];
+            if (++positions[p] < part.size()) {
+                heap.add(p);
+            }
+        }
+        return new ScoredPages(pageIds, scores, total);
+    }
+}
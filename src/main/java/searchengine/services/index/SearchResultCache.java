@@ -0,0 +1,140 @@
+package searchengine.services.index;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+import searchengine.model.Site;
+
+import java.util.*;
+
+/**
+ * LRU cache of ranked search results keyed by the normalized lemma set, site filter and match
+ * mode, so offset/limit windows of a repeated query are served from memory. An entry holds the
+ * top k pages it was computed for, or every matching page when it is exhaustive. The cache is
+ * bounded by an estimate of the memory its entries hold.
+ *
+ * <p>Writers call {@link #invalidate(Integer)} whenever a site's index changes. Results computed
+ * while an invalidation was in progress are not stored: callers take a {@link #generation} before
+ * ranking and pass it to {@link #put}.
+ */
+@Component
+public class SearchResultCache {
+    private static final long ENTRY_OVERHEAD_BYTES = 128;
+
+    private final SearchSettings settings;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<Integer, Long> siteGenerations = new HashMap<>();
+    private long globalGeneration = 0;
+    private long bytes = 0;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Counter invalidations;
+
+    public SearchResultCache(SearchSettings settings, MeterRegistry registry) {
+        this.settings = settings;
+        this.hits = Counter.builder("search.cache.requests").tag("result", "hit").register(registry);
+        this.misses = Counter.builder("search.cache.requests").tag("result", "miss").register(registry);
+        this.evictions = Counter.builder("search.cache.evictions").register(registry);
+        this.invalidations = Counter.builder("search.cache.invalidations").register(registry);
+        Gauge.builder("search.cache.size", this, cache -> cache.size()).register(registry);
+        Gauge.builder("search.cache.bytes", this, cache -> cache.bytes()).baseUnit("bytes").register(registry);
+    }
+
+    public static Key key(Collection<String> lemmas, Site site, int minMatch) {
+        return new Key(lemmas.stream().distinct().sorted().toList(), site != null ? site.getId() : null, minMatch);
+    }
+
+    /**
+     * Returns cached pages when they cover the first {@code k} results of the query.
+     */
+    public synchronized ScoredPages get(Key key, int k) {
+        Entry entry = entries.get(key);
+        boolean hit = entry != null && (entry.exhaustive() || entry.pages().size() >= k);
+        (hit ? hits : misses).increment();
+        return hit ? entry.pages() : null;
+    }
+
+    /**
+     * Current generation for the site filter, {@code null} meaning all sites.
+     */
+    public synchronized long generation(Integer siteId) {
+        return siteId == null ? globalGeneration : siteGenerations.getOrDefault(siteId, 0L);
+    }
+
+    /**
+     * Stores pages ranked for the query, {@code exhaustive} when they are all the matching pages
+     * rather than the top of them.
+     */
+    public synchronized void put(Key key, ScoredPages pages, boolean exhaustive, long generation) {
+        if (generation(key.siteId()) != generation) {
+            return;
+        }
+        Entry entry = new Entry(pages, exhaustive);
+        long weight = weight(key, entry);
+        if (weight > settings.getCacheMaxBytes()) {
+            return;
+        }
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            bytes -= weight(key, previous);
+        }
+        bytes += weight;
+
+        Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+        while ((bytes > settings.getCacheMaxBytes() || entries.size() > settings.getCacheMaxEntries())
+                && eldest.hasNext()) {
+            Map.Entry<Key, Entry> evicted = eldest.next();
+            bytes -= weight(evicted.getKey(), evicted.getValue());
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Drops results of the site and of every query across all sites.
+     */
+    public synchronized void invalidate(Integer siteId) {
+        if (siteId == null) {
+            return;
+        }
+        siteGenerations.merge(siteId, 1L, Long::sum);
+        globalGeneration++;
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Entry> entry = iterator.next();
+            Integer entrySite = entry.getKey().siteId();
+            if (entrySite == null || entrySite.equals(siteId)) {
+                bytes -= weight(entry.getKey(), entry.getValue());
+                iterator.remove();
+            }
+        }
+        invalidations.increment();
+    }
+
+    public void invalidate(Collection<Integer> siteIds) {
+        new HashSet<>(siteIds).forEach(this::invalidate);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    private static long weight(Key key, Entry entry) {
+        long lemmaChars = key.lemmas().stream().mapToLong(String::length).sum();
+        return ENTRY_OVERHEAD_BYTES + lemmaChars * 2 + entry.pages().size() * 12L;
+    }
+
+    public record Key(List<String> lemmas, Integer siteId, int minMatch) {
+    }
+
+    private record Entry(ScoredPages pages, boolean exhaustive) {
+    }
+}
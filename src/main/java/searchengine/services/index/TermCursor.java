@@ -0,0 +1,62 @@
+package searchengine.services.index;
+
+/**
+ * Iterates the pages of one query lemma in page id order and scores them with {@link Bm25}.
+ */
+class TermCursor {
+    static final int EXHAUSTED = Integer.MAX_VALUE;
+
+    private final PostingList list;
+    private final double idf;
+    private final Bm25 bm25;
+    private final double upperBound;
+    private int position;
+
+    TermCursor(PostingList list, double idf, Bm25 bm25) {
+        this.list = list;
+        this.idf = idf;
+        this.bm25 = bm25;
+        this.upperBound = bm25.upperBound(idf, list.maxRank());
+    }
+
+    int page() {
+        return position < list.size() ? list.pageAt(position) : EXHAUSTED;
+    }
+
+    double upperBound() {
+        return upperBound;
+    }
+
+    long cost() {
+        return list.size();
+    }
+
+    /**
+     * Moves to the first page not less than {@code pageId} and returns it, or {@link #EXHAUSTED}.
+     */
+    int advance(int pageId) {
+        position = list.advance(position, pageId);
+        return page();
+    }
+
+    /**
+     * Moves back to the first page of the list.
+     */
+    void reset() {
+        position = 0;
+    }
+
+    int next() {
+        if (position < list.size()) {
+            position++;
+        }
+        return page();
+    }
+
+    /**
+     * Score of the current page for this lemma.
+     */
+    double score() {
+        return bm25.score(idf, list.rankAt(position), list.pageAt(position));
+    }
+}
@@ -0,0 +1,170 @@
+package searchengine.services.index;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Document-at-a-time top-k evaluation over {@link TermCursor}s. Required terms decide whether a
+ * page matches, optional terms only add to its score. A page's score is the sum of the BM25
+ * weights of every term it contains.
+ *
+ * <p>Per-term upper bounds (the weight of the largest rank in each posting list) let the evaluator
+ * stop scoring a page as soon as it can no longer beat the k-th best score, and in the disjunctive
+ * mode skip whole runs of pages that contain only low-impact terms (MaxScore).
+ */
+final class TopKSearch {
+    private TopKSearch() {
+    }
+
+    /**
+     * Pages containing every required term. The total is exact: the intersection is walked in
+     * full, but only pages able to enter the top k are scored against optional terms.
+     */
+    static ScoredPages conjunctive(TermCursor[] required, TermCursor[] optional, int k) {
+        Arrays.sort(required, Comparator.comparingLong(TermCursor::cost));
+        Arrays.sort(optional, Comparator.comparingDouble(TermCursor::upperBound).reversed());
+        double optionalBound = 0;
+        for (TermCursor cursor : optional) {
+            optionalBound += cursor.upperBound();
+        }
+
+        TopPages top = new TopPages(k);
+        int total = 0;
+        TermCursor driver = required[0];
+        int page = driver.page();
+        candidates:
+        while (page != TermCursor.EXHAUSTED) {
+            for (int i = 1; i < required.length; i++) {
+                int next = required[i].advance(page);
+                if (next != page) {
+                    page = driver.advance(next);
+                    continue candidates;
+                }
+            }
+
+            total++;
+            double score = 0;
+            for (TermCursor cursor : required) {
+                score += cursor.score();
+            }
+            double remaining = optionalBound;
+            for (TermCursor cursor : optional) {
+                if (!top.accepts(score + remaining)) {
+                    break;
+                }
+                if (cursor.advance(page) == page) {
+                    score += cursor.score();
+                }
+                remaining -= cursor.upperBound();
+            }
+            top.offer(page, score);
+            page = driver.next();
+        }
+        return top.toScoredPages(total);
+    }
+
+    /**
+     * Pages containing at least {@code minMatch} required terms. Cursors are ordered by upper
+     * bound and split into non-essential ones, whose combined bound cannot beat the current
+     * threshold, and essential ones that alone generate candidates. Pruning skips pages, so the
+     * total is counted beforehand in a pass over the required postings that scores nothing.
+     */
+    static ScoredPages disjunctive(TermCursor[] required, TermCursor[] optional, int minMatch, int k) {
+        int total = countMatching(required, minMatch);
+        for (TermCursor cursor : required) {
+            cursor.reset();
+        }
+
+        Comparator<TermCursor> byBound = Comparator.comparingDouble(TermCursor::upperBound);
+        Arrays.sort(required, byBound);
+        Arrays.sort(optional, byBound);
+
+        // Optional terms come first so they never drive candidate generation
+        TermCursor[] cursors = new TermCursor[optional.length + required.length];
+        System.arraycopy(optional, 0, cursors, 0, optional.length);
+        System.arraycopy(required, 0, cursors, optional.length, required.length);
+        int firstRequired = optional.length;
+        double[] bounds = new double[cursors.length];
+        double sum = 0;
+        for (int i = 0; i < cursors.length; i++) {
+            sum += cursors[i].upperBound();
+            bounds[i] = sum;
+        }
+
+        TopPages top = new TopPages(k);
+        int firstEssential = firstRequired;
+        while (true) {
+            while (firstEssential < cursors.length && !top.accepts(bounds[firstEssential])) {
+                firstEssential++;
+            }
+            if (firstEssential >= cursors.length) {
+                break;
+            }
+
+            int page = TermCursor.EXHAUSTED;
+            for (int i = firstEssential; i < cursors.length; i++) {
+                page = Math.min(page, cursors[i].page());
+            }
+            if (page == TermCursor.EXHAUSTED) {
+                break;
+            }
+
+            double score = 0;
+            int matches = 0;
+            for (int i = firstEssential; i < cursors.length; i++) {
+                if (cursors[i].page() == page) {
+                    score += cursors[i].score();
+                    matches++;
+                    cursors[i].next();
+                }
+            }
+
+            boolean evaluated = true;
+            for (int i = firstEssential - 1; i >= 0; i--) {
+                int requiredLeft = Math.max(0, i - firstRequired + 1);
+                if (!top.accepts(score + bounds[i]) || matches + requiredLeft < minMatch) {
+                    evaluated = false;
+                    break;
+                }
+                if (cursors[i].advance(page) == page) {
+                    score += cursors[i].score();
+                    if (i >= firstRequired) {
+                        matches++;
+                    }
+                }
+            }
+
+            if (evaluated && matches >= minMatch) {
+                top.offer(page, score);
+            }
+        }
+        return top.toScoredPages(total);
+    }
+
+    /**
+     * Number of pages containing at least {@code minMatch} of the terms, found by merging their
+     * postings in page id order.
+     */
+    static int countMatching(TermCursor[] cursors, int minMatch) {
+        int total = 0;
+        while (true) {
+            int page = TermCursor.EXHAUSTED;
+            for (TermCursor cursor : cursors) {
+                page = Math.min(page, cursor.page());
+            }
+            if (page == TermCursor.EXHAUSTED) {
+                return total;
+            }
+            int matches = 0;
+            for (TermCursor cursor : cursors) {
+                if (cursor.page() == page) {
+                    matches++;
+                    cursor.next();
+                }
+            }
+            if (matches >= minMatch) {
+                total++;
+            }
+        }
+    }
+}
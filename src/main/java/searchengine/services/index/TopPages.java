@@ -0,0 +1,111 @@
+package searchengine.services.index;
+
+import java.util.Arrays;
+
+/**
+ * Bounded min-heap of the best {@code k} pages seen so far, backed by primitive arrays.
+ */
+class TopPages {
+    private final int capacity;
+    private int[] pageIds;
+    private double[] scores;
+    private int size;
+
+    TopPages(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        int initial = Math.max(1, Math.min(capacity, 1024));
+        this.pageIds = new int[initial];
+        this.scores = new double[initial];
+    }
+
+    /**
+     * Lowest score a page must beat to enter, negative infinity while the heap is not full.
+     */
+    double threshold() {
+        return size < capacity ? Double.NEGATIVE_INFINITY : scores[0];
+    }
+
+    boolean accepts(double score) {
+        return score > threshold();
+    }
+
+    void offer(int pageId, double score) {
+        if (!accepts(score)) {
+            return;
+        }
+        if (size < capacity) {
+            ensureCapacity();
+            pageIds[size] = pageId;
+            scores[size] = score;
+            siftUp(size++);
+        } else {
+            pageIds[0] = pageId;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Drains the heap into pages ordered by descending score, ties by ascending page id.
+     */
+    ScoredPages toScoredPages(int total) {
+        int[] resultIds = new int[size];
+        double[] resultScores = new double[size];
+        for (int i = size - 1; i >= 0; i--) {
+            resultIds[i] = pageIds[0];
+            resultScores[i] = scores[0];
+            size--;
+            pageIds[0] = pageIds[size];
+            scores[0] = scores[size];
+            siftDown(0);
+        }
+        return new ScoredPages(resultIds, resultScores, total);
+    }
+
+    private void ensureCapacity() {
+        if (size == pageIds.length) {
+            int newLength = (int) Math.min(capacity, pageIds.length * 2L);
+            pageIds = Arrays.copyOf(pageIds, newLength);
+            scores = Arrays.copyOf(scores, newLength);
+        }
+    }
+
+    private boolean below(int a, int b) {
+        return scores[a] < scores[b] || (scores[a] == scores[b] && pageIds[a] > pageIds[b]);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!below(i, parent)) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) {
+                return;
+            }
+            int smallest = left + 1 < size && below(left + 1, left) ? left + 1 : left;
+            if (!below(smallest, i)) {
+                return;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int id = pageIds[a];
+        pageIds[a] = pageIds[b];
+        pageIds[b] = id;
+        double score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+}
@@ -0,0 +1,71 @@
+package searchengine.utils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Collects a page's text as it is streamed: the UTF-8 bytes are hashed with SHA-256 to detect
+ * unchanged pages and, unless created with {@code compress = false}, deflated in the format
+ * {@link Compression#inflateToString(byte[])} reads.
+ */
+public class PageTextWriter extends Writer {
+    private final MessageDigest digest;
+    private final ByteArrayOutputStream compressed;
+    private final Writer writer;
+    private String hash;
+
+    public PageTextWriter(boolean compress) {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        compressed = compress ? new ByteArrayOutputStream(4096) : null;
+        OutputStream sink = compress ? new DeflaterOutputStream(compressed) : OutputStream.nullOutputStream();
+        writer = new OutputStreamWriter(new DigestOutputStream(sink, digest), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) throws IOException {
+        writer.write(buffer, offset, length);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (hash == null) {
+            writer.close();
+            hash = HexFormat.of().formatHex(digest.digest());
+        }
+    }
+
+    public String hash() {
+        finish();
+        return hash;
+    }
+
+    /**
+     * Deflated text, or {@code null} when the writer only hashes.
+     */
+    public byte[] compressed() {
+        finish();
+        return compressed != null ? compressed.toByteArray() : null;
+    }
+
+    private void finish() {
+        try {
+            close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package searchengine.utils.lemmatization;
+
+import org.jsoup.internal.StringUtil;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Reads the visible text of a parsed document by walking its text nodes, with whitespace
+ * normalized the way {@link Element#text()} does it. Text is produced one node at a time, so the
+ * plain text of a page never exists as a single string. Everything read is also copied to an
+ * optional {@code tee} writer, e.g. to compress and hash the text in the same pass.
+ */
+public class DocumentTextReader extends Reader {
+    private final Node root;
+    private final Writer tee;
+    private final StringBuilder chunk = new StringBuilder(256);
+    private int chunkPosition = 0;
+
+    private Node node;
+    private boolean entering = true;
+    private boolean started = false;
+    // Whitespace is held back until more text follows, which trims the end of the text
+    private final StringBuilder pendingWhitespace = new StringBuilder();
+
+    public DocumentTextReader(Node root, Writer tee) {
+        this.root = root;
+        this.tee = tee;
+        this.node = root;
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+        while (chunkPosition >= chunk.length()) {
+            chunk.setLength(0);
+            chunkPosition = 0;
+            if (!step()) {
+                return -1;
+            }
+        }
+        int count = Math.min(length, chunk.length() - chunkPosition);
+        chunk.getChars(chunkPosition, chunkPosition + count, buffer, offset);
+        chunkPosition += count;
+        if (tee != null) {
+            tee.write(buffer, offset, count);
+        }
+        return count;
+    }
+
+    @Override
+    public void close() {
+        node = null;
+    }
+
+    /**
+     * Visits the next node of a depth-first walk, appending its text to the chunk.
+     * Returns {@code false} once the walk is over.
+     */
+    private boolean step() {
+        if (node == null) {
+            return false;
+        }
+        if (entering) {
+            head(node);
+            if (node.childNodeSize() > 0) {
+                node = node.childNode(0);
+            } else {
+                entering = false;
+            }
+            return true;
+        }
+
+        tail(node);
+        if (node == root) {
+            node = null;
+        } else if (node.nextSibling() != null) {
+            node = node.nextSibling();
+            entering = true;
+        } else {
+            node = node.parentNode();
+        }
+        return true;
+    }
+
+    private void head(Node current) {
+        if (current instanceof TextNode textNode) {
+            appendText(textNode);
+        } else if (current instanceof Element element && (element.isBlock() || element.nameIs("br"))) {
+            space();
+        }
+    }
+
+    private void tail(Node current) {
+        if (current instanceof Element element && element.isBlock()) {
+            Node next = current.nextSibling();
+            if (next instanceof TextNode || next instanceof Element nextElement && !nextElement.tag().formatAsBlock()) {
+                space();
+            }
+        }
+    }
+
+    private void appendText(TextNode textNode) {
+        String text = textNode.getWholeText();
+        if (preservesWhitespace(textNode.parent())) {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (StringUtil.isActuallyWhitespace(c)) {
+                    if (started) {
+                        pendingWhitespace.append(c);
+                    }
+                } else {
+                    append(c);
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (StringUtil.isActuallyWhitespace(c)) {
+                space();
+            } else if (!StringUtil.isInvisibleChar(c)) {
+                append(c);
+            }
+        }
+    }
+
+    private void space() {
+        boolean endsWithSpace = !pendingWhitespace.isEmpty()
+                && pendingWhitespace.charAt(pendingWhitespace.length() - 1) == ' ';
+        if (started && !endsWithSpace) {
+            pendingWhitespace.append(' ');
+        }
+    }
+
+    private void append(char c) {
+        if (!pendingWhitespace.isEmpty()) {
+            chunk.append(pendingWhitespace);
+            pendingWhitespace.setLength(0);
+        }
+        chunk.append(c);
+        started = true;
+    }
+
+    private static boolean preservesWhitespace(Node node) {
+        for (int level = 0; node instanceof Element element && level < 6; level++) {
+            if (element.tag().preserveWhitespace()) {
+                return true;
+            }
+            node = element.parent();
+        }
+        return false;
+    }
+}
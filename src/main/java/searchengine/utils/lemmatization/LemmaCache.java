@@ -0,0 +1,136 @@
+package searchengine.utils.lemmatization;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, thread-safe cache from a word form to its lemmas. Entries are spread over independently
+ * locked LRU segments. Lookups take the token straight from the tokenizer's char buffer through a
+ * reusable {@link Probe}, so a hit allocates nothing.
+ */
+public class LemmaCache {
+    private static final int SEGMENTS = 32;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public LemmaCache(int maxSize) {
+        int segmentSize = Math.max(1, maxSize / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    /**
+     * Returns the cached lemmas of the form held by the probe, or {@code null}.
+     */
+    public String[] get(Probe probe) {
+        Segment segment = segmentFor(probe.hash);
+        String[] lemmas;
+        synchronized (segment) {
+            lemmas = segment.get(probe);
+        }
+        (lemmas != null ? hits : misses).increment();
+        return lemmas;
+    }
+
+    public void put(Probe probe, String[] lemmas) {
+        Key key = new Key(Arrays.copyOf(probe.chars, probe.length), probe.length, probe.hash);
+        Segment segment = segmentFor(key.hash);
+        synchronized (segment) {
+            segment.put(key, lemmas);
+        }
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * Word form key. Stored keys own their chars; a probe points into a caller's buffer and is
+     * reused between lookups by one thread.
+     */
+    public static class Key {
+        char[] chars;
+        int length;
+        int hash;
+
+        private Key(char[] chars, int length, int hash) {
+            this.chars = chars;
+            this.length = length;
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key key && key.length == length
+                    && Arrays.equals(chars, 0, length, key.chars, 0, length);
+        }
+    }
+
+    public static class Probe extends Key {
+        public Probe() {
+            super(new char[0], 0, 0);
+        }
+
+        public Probe set(char[] buffer, int length) {
+            int h = 0;
+            for (int i = 0; i < length; i++) {
+                h = 31 * h + buffer[i];
+            }
+            this.chars = buffer;
+            this.length = length;
+            this.hash = h;
+            return this;
+        }
+    }
+
+    private class Segment extends LinkedHashMap<Key, String[]> {
+        private final int maxSize;
+
+        private Segment(int maxSize) {
+            super(Math.min(maxSize, 1024) * 2, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, String[]> eldest) {
+            if (size() > maxSize) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package searchengine.utils.lemmatization;
+
+import java.util.Arrays;
+
+/**
+ * Counts lemma occurrences without boxing: counts live in an int array indexed by
+ * {@link LemmaTable} ids.
+ */
+public class LemmaCounter {
+    private final LemmaTable table;
+    private int[] counts;
+
+    public LemmaCounter() {
+        this(64);
+    }
+
+    public LemmaCounter(int expectedSize) {
+        table = new LemmaTable(expectedSize);
+        counts = new int[Math.max(8, expectedSize)];
+    }
+
+    public void add(String lemma) {
+        increment(table.id(lemma));
+    }
+
+    public void add(char[] buffer, int length) {
+        increment(table.id(buffer, length));
+    }
+
+    public LemmaCounts toCounts() {
+        String[] lemmas = new String[table.size()];
+        for (int id = 0; id < lemmas.length; id++) {
+            lemmas[id] = table.lemma(id);
+        }
+        return new LemmaCounts(lemmas, Arrays.copyOf(counts, lemmas.length));
+    }
+
+    private void increment(int id) {
+        if (id == counts.length) {
+            counts = Arrays.copyOf(counts, counts.length * 2);
+        }
+        counts[id]++;
+    }
+}
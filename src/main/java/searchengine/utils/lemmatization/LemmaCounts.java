@@ -0,0 +1,23 @@
+package searchengine.utils.lemmatization;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Distinct lemmas of a text with the number of times each occurs, as parallel arrays.
+ */
+public record LemmaCounts(String[] lemmas, int[] counts) {
+    public static final LemmaCounts EMPTY = new LemmaCounts(new String[0], new int[0]);
+
+    public int size() {
+        return lemmas.length;
+    }
+
+    public Map<String, Integer> toMap() {
+        Map<String, Integer> map = new HashMap<>(lemmas.length * 2);
+        for (int i = 0; i < lemmas.length; i++) {
+            map.put(lemmas[i], counts[i]);
+        }
+        return map;
+    }
+}
@@ -1,9 +1,7 @@
 package searchengine.utils.lemmatization;
 
-import java.util.Map;
-
 public interface LemmaFinder {
-    Map<String, Integer> collectLemmas(String text);
+    LemmaCounts collectLemmas(String text);
 
     void close();
 }
@@ -0,0 +1,111 @@
+package searchengine.utils.lemmatization;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing table that gives every distinct lemma a dense id in insertion order. Lookups by
+ * string or by a char buffer allocate nothing; a lemma string is created once, on first insert
+ * from a buffer. Callers keep per-lemma values in plain arrays indexed by the id.
+ */
+public class LemmaTable {
+    private String[] lemmas;
+    private int[] hashes;
+    // Slot -> id + 1, zero marks an empty slot
+    private int[] slots;
+    private int size;
+
+    public LemmaTable(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2) - 1) << 1;
+        slots = new int[capacity];
+        lemmas = new String[Math.max(8, expectedSize)];
+        hashes = new int[lemmas.length];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String lemma(int id) {
+        return lemmas[id];
+    }
+
+    /**
+     * Returns the id of the lemma, adding it if it is new.
+     */
+    public int id(String lemma) {
+        int hash = lemma.hashCode();
+        int mask = slots.length - 1;
+        for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                return insert(slot, lemma, hash);
+            }
+            if (hashes[entry - 1] == hash && lemmas[entry - 1].equals(lemma)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * Returns the id of the lemma held in {@code buffer[0, length)}, adding it if it is new.
+     */
+    public int id(char[] buffer, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        int mask = slots.length - 1;
+        for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                return insert(slot, new String(buffer, 0, length), hash);
+            }
+            if (hashes[entry - 1] == hash && contentEquals(lemmas[entry - 1], buffer, length)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    private int insert(int slot, String lemma, int hash) {
+        if (size == lemmas.length) {
+            lemmas = Arrays.copyOf(lemmas, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        int id = size++;
+        lemmas[id] = lemma;
+        hashes[id] = hash;
+        slots[slot] = id + 1;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = mix(hashes[id]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+    }
+
+    private static boolean contentEquals(String lemma, char[] buffer, int length) {
+        if (lemma.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (lemma.charAt(i) != buffer[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
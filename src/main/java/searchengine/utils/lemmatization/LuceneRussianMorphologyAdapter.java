@@ -8,8 +8,6 @@ import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.io.StringReader;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Set;
 
 @Component
@@ -27,20 +25,19 @@ public class LuceneRussianMorphologyAdapter implements LemmaFinder {
     }
 
     @Override
-    public Map<String, Integer> collectLemmas(String text) {
-        Map<String, Integer> lemmas = new HashMap<>();
+    public LemmaCounts collectLemmas(String text) {
         if (text == null || text.isBlank()) {
-            return lemmas;
+            return LemmaCounts.EMPTY;
         }
 
+        LemmaCounter lemmas = new LemmaCounter();
         try (TokenStream tokenStream = analyzer.tokenStream("", new StringReader(text))) {
             tokenStream.reset();
             CharTermAttribute attribute = tokenStream.addAttribute(CharTermAttribute.class);
 
             while (tokenStream.incrementToken()) {
-                String lemma = attribute.toString();
-                if (lemma.length() > 2) { // Игнорируем короткие слова
-                    lemmas.put(lemma, lemmas.getOrDefault(lemma, 0) + 1);
+                if (attribute.length() > 2) { // Игнорируем короткие слова
+                    lemmas.add(attribute.buffer(), attribute.length());
                 }
             }
 
@@ -49,7 +46,7 @@ public class LuceneRussianMorphologyAdapter implements LemmaFinder {
             throw new RuntimeException("Ошибка при лемматизации текста", e);
         }
 
-        return lemmas;
+        return lemmas.toCounts();
     }
 
     @Override
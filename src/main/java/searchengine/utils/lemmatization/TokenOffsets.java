@@ -0,0 +1,142 @@
+package searchengine.utils.lemmatization;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Character offsets of every token of a text, grouped by lemma. Offsets of a lemma are stored
+ * as {@code [start0, end0, start1, end1, ...]} in ascending order, so the number of pairs is
+ * the lemma's count on the page.
+ */
+public class TokenOffsets {
+    public static final TokenOffsets EMPTY = new TokenOffsets(Map.of());
+
+    private final Map<String, int[]> offsets;
+
+    private TokenOffsets(Map<String, int[]> offsets) {
+        this.offsets = offsets;
+    }
+
+    public int[] get(String lemma) {
+        return offsets.get(lemma);
+    }
+
+    public Set<String> lemmas() {
+        return offsets.keySet();
+    }
+
+    public LemmaCounts counts() {
+        String[] lemmas = new String[offsets.size()];
+        int[] counts = new int[offsets.size()];
+        int n = 0;
+        for (Map.Entry<String, int[]> entry : offsets.entrySet()) {
+            lemmas[n] = entry.getKey();
+            counts[n] = entry.getValue().length / 2;
+            n++;
+        }
+        return new LemmaCounts(lemmas, counts);
+    }
+
+    /**
+     * Serializes as lemma, pair count, then delta-encoded starts and token lengths as varints.
+     */
+    public byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(offsets.size() * 16);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeVarInt(out, offsets.size());
+            for (Map.Entry<String, int[]> entry : offsets.entrySet()) {
+                int[] pairs = entry.getValue();
+                out.writeUTF(entry.getKey());
+                writeVarInt(out, pairs.length / 2);
+                int previousStart = 0;
+                for (int i = 0; i < pairs.length; i += 2) {
+                    writeVarInt(out, pairs[i] - previousStart);
+                    writeVarInt(out, pairs[i + 1] - pairs[i]);
+                    previousStart = pairs[i];
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static TokenOffsets decode(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            int lemmaCount = readVarInt(in);
+            Map<String, int[]> offsets = new HashMap<>(lemmaCount * 2);
+            for (int l = 0; l < lemmaCount; l++) {
+                String lemma = in.readUTF();
+                int[] pairs = new int[readVarInt(in) * 2];
+                int start = 0;
+                for (int i = 0; i < pairs.length; i += 2) {
+                    start += readVarInt(in);
+                    pairs[i] = start;
+                    pairs[i + 1] = start + readVarInt(in);
+                }
+                offsets.put(lemma, pairs);
+            }
+            return new TokenOffsets(offsets);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Collects offsets per token; lemmas are resolved through a {@link LemmaTable}, so adding a
+     * token neither boxes nor hashes into a map.
+     */
+    public static class Builder {
+        private final LemmaTable table = new LemmaTable(256);
+        private int[][] offsets = new int[256][];
+        private int[] sizes = new int[256];
+
+        public void add(String lemma, int start, int end) {
+            int id = table.id(lemma);
+            if (id == offsets.length) {
+                offsets = Arrays.copyOf(offsets, id * 2);
+                sizes = Arrays.copyOf(sizes, id * 2);
+            }
+            int[] pairs = offsets[id];
+            int size = sizes[id];
+            if (pairs == null) {
+                pairs = new int[4];
+                offsets[id] = pairs;
+            } else if (size + 2 > pairs.length) {
+                pairs = Arrays.copyOf(pairs, pairs.length * 2);
+                offsets[id] = pairs;
+            }
+            pairs[size] = start;
+            pairs[size + 1] = end;
+            sizes[id] = size + 2;
+        }
+
+        public TokenOffsets build() {
+            Map<String, int[]> trimmed = new HashMap<>(table.size() * 2);
+            for (int id = 0; id < table.size(); id++) {
+                trimmed.put(table.lemma(id), Arrays.copyOf(offsets[id], sizes[id]));
+            }
+            return new TokenOffsets(trimmed);
+        }
+    }
+}
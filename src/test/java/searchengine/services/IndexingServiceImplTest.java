@@ -0,0 +1,76 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.ResponseEntity;
+import searchengine.config.SitesList;
+import searchengine.config.UrlRules;
+import searchengine.model.Site;
+import searchengine.repository.SiteRepository;
+import searchengine.services.crawler.CrawlPipeline;
+import searchengine.services.crawler.FrontierStore;
+import searchengine.services.index.PageWriter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IndexingServiceImplTest {
+    private static final String ROOT = "https://www.site.ru/";
+
+    private final SiteRepository siteRepository = mock(SiteRepository.class);
+    private final PageIndexQueue pageIndexQueue = mock(PageIndexQueue.class);
+    private final IndexingServiceImpl service = new IndexingServiceImpl(settings(), siteRepository,
+            mock(PageWriter.class), mock(CrawlPipeline.class), mock(FrontierStore.class), pageIndexQueue);
+    private final Site site = new Site();
+
+    IndexingServiceImplTest() {
+        site.setUrl(ROOT);
+        when(siteRepository.findFirstByUrl(ROOT)).thenReturn(Optional.of(site));
+        when(pageIndexQueue.submitBatch(any())).thenReturn(Optional.of(new PageIndexQueue.BatchStatus("batch",
+                PageIndexQueue.State.QUEUED, LocalDateTime.now(), null, null, 1, 0, 0, List.of())));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void batchQueuesVariantsOfAPageOnce() {
+        ResponseEntity<Map<String, Object>> response = service.indexPages(List.of(
+                ROOT + "a", "http://site.ru/a#top", ROOT + "a?utm_source=mail", ROOT + "a/",
+                ROOT + "b?y=2&x=1", ROOT + "b?x=1&y=2",
+                ROOT + "file.pdf", "https://other.ru/a"));
+
+        ArgumentCaptor<Map<Site, List<PageTarget>>> batch = ArgumentCaptor.forClass(Map.class);
+        verify(pageIndexQueue).submitBatch(batch.capture());
+        assertThat(batch.getValue().get(site)).extracting(PageTarget::path).containsExactly("/a", "/b?x=1&y=2");
+        assertThat(response.getBody()).containsEntry("excluded", List.of(ROOT + "file.pdf"))
+                .containsEntry("outsideSites", List.of("https://other.ru/a"));
+    }
+
+    @Test
+    void singlePageIsStoredUnderTheCrawlPath() {
+        when(pageIndexQueue.submit(any(), any())).thenReturn(Optional.of(new PageIndexQueue.JobStatus("job", ROOT + "a",
+                PageIndexQueue.State.QUEUED, null, LocalDateTime.now(), null, null, null, null, null)));
+
+        service.indexPage("http://SITE.ru:80/a?utm_medium=x#top");
+
+        verify(pageIndexQueue).submit(site, new PageTarget(ROOT + "a", "/a", ROOT + "a"));
+        assertThat(service.indexPage(ROOT + "feed/").getStatusCode().value()).isEqualTo(400);
+    }
+
+    private static SitesList settings() {
+        searchengine.config.Site configSite = new searchengine.config.Site();
+        configSite.setUrl(ROOT);
+        configSite.setName("site");
+        SitesList settings = new SitesList();
+        settings.setSites(List.of(configSite));
+        settings.setUrlRules(UrlRules.defaults());
+        return settings;
+    }
+}
@@ -0,0 +1,135 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import searchengine.config.Config;
+import searchengine.config.SitesList;
+import searchengine.config.UrlRules;
+import searchengine.model.Site;
+import searchengine.services.crawler.HostScheduler;
+import searchengine.services.crawler.PageFetcher;
+import searchengine.services.crawler.UrlCanonicalizer;
+import searchengine.services.index.PageWriter;
+import searchengine.services.index.ParsedPage;
+
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PageBatchIndexerTest {
+    private static final String ROOT = "https://site.ru";
+
+    private final PageIndexer pageIndexer = mock(PageIndexer.class);
+    private final PageFetcher pageFetcher = mock(PageFetcher.class);
+    private final PageWriter pageWriter = mock(PageWriter.class);
+    private final HostScheduler hostScheduler = new HostScheduler(config());
+    private final PageBatchIndexer indexer = new PageBatchIndexer(pageIndexer, pageFetcher, hostScheduler,
+            pageWriter, settings());
+    private final Site site = new Site();
+    // URL -> the last outcome reported for it
+    private final Map<String, String> outcomes = new ConcurrentHashMap<>();
+    private final PageBatchIndexer.Listener listener = new PageBatchIndexer.Listener() {
+        @Override
+        public void started(String url) {
+            outcomes.put(url, "started");
+        }
+
+        @Override
+        public void indexed(String url, int code) {
+            outcomes.put(url, "indexed " + code);
+        }
+
+        @Override
+        public void failed(String url, String error) {
+            outcomes.put(url, "failed " + error);
+        }
+    };
+
+    PageBatchIndexerTest() throws Exception {
+        site.setUrl(ROOT + "/");
+        when(pageFetcher.fetchPage(anyString(), anyMap())).thenAnswer(invocation -> {
+            String url = invocation.getArgument(0);
+            if (url.endsWith("/missing")) {
+                throw new IOException("Not found");
+            }
+            return new PageFetcher.Response(url, 200, HttpHeaders.of(Map.of(), (name, value) -> true),
+                    new byte[0], "UTF-8", PageFetcher.Outcome.OK, 1, 0);
+        });
+        when(pageIndexer.parse(eq(site), anyString(), any())).thenAnswer(invocation -> {
+            String path = invocation.getArgument(1);
+            return new ParsedPage(site, path, 200, "", null, null, null, null, null, null, null);
+        });
+    }
+
+    @AfterEach
+    void shutdown() {
+        indexer.shutdown();
+        hostScheduler.shutdown();
+    }
+
+    @Test
+    void pagesAreIndexedOnlyOnceStored() throws InterruptedException {
+        when(pageWriter.write(anyList())).thenAnswer(invocation -> {
+            List<ParsedPage> pages = invocation.getArgument(0);
+            // Nothing is reported indexed while its transaction is open
+            pages.forEach(page -> assertThat(outcomes.get(ROOT + page.path())).isEqualTo("started"));
+            return List.of();
+        });
+
+        indexer.index(Map.of(site, targets("/a", "/b", "/missing")), listener);
+
+        assertThat(outcomes).containsEntry(ROOT + "/a", "indexed 200")
+                .containsEntry(ROOT + "/b", "indexed 200")
+                .containsEntry(ROOT + "/missing", "failed Not found");
+    }
+
+    @Test
+    void failedChunkFailsOnlyThePagesThatCannotBeStored() throws InterruptedException {
+        when(pageWriter.write(anyList())).thenAnswer(invocation -> {
+            List<ParsedPage> pages = invocation.getArgument(0);
+            if (pages.stream().anyMatch(page -> page.path().equals("/bad"))) {
+                throw new IllegalStateException("Data too long");
+            }
+            return List.of();
+        });
+
+        indexer.index(Map.of(site, targets("/a", "/bad", "/c")), listener);
+
+        assertThat(outcomes).containsEntry(ROOT + "/a", "indexed 200")
+                .containsEntry(ROOT + "/bad", "failed Data too long")
+                .containsEntry(ROOT + "/c", "indexed 200");
+    }
+
+    private static List<PageTarget> targets(String... paths) {
+        UrlCanonicalizer canonicalizer = new UrlCanonicalizer(ROOT + "/", UrlRules.defaults());
+        return Arrays.stream(paths).map(path -> PageTarget.of(canonicalizer, ROOT + path)).toList();
+    }
+
+    private static SitesList settings() {
+        SitesList settings = new SitesList();
+        settings.setFetchThreads(4);
+        settings.setPersistBatchSize(10);
+        return settings;
+    }
+
+    private static Config config() {
+        Config config = new Config();
+        config.setDelay(0);
+        config.setMinDelay(0);
+        config.setMaxDelay(1000);
+        config.setMaxConnectionsPerHost(4);
+        return config;
+    }
+}
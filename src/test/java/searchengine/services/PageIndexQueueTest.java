@@ -0,0 +1,136 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import searchengine.config.SitesList;
+import searchengine.config.UrlRules;
+import searchengine.model.Site;
+import searchengine.services.crawler.UrlCanonicalizer;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PageIndexQueueTest {
+    private static final String ROOT = "https://site.ru";
+    private static final UrlCanonicalizer CANONICALIZER = new UrlCanonicalizer(ROOT + "/", UrlRules.defaults());
+
+    private final PageIndexer pageIndexer = mock(PageIndexer.class);
+    private final PageBatchIndexer pageBatchIndexer = mock(PageBatchIndexer.class);
+    private final PageIndexQueue queue = new PageIndexQueue(pageIndexer, pageBatchIndexer, settings());
+    private final Site site = new Site();
+
+    @AfterEach
+    void shutdown() {
+        queue.shutdown();
+    }
+
+    @Test
+    void batchReusesWaitingJobsAndRunsOnlyItsOwnPages() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(pageIndexer.index(site, target("/busy"))).thenAnswer(invocation -> {
+            running.countDown();
+            release.await();
+            return 200;
+        });
+        when(pageIndexer.index(site, target("/a"))).thenReturn(200);
+        doAnswer(invocation -> {
+            PageBatchIndexer.Listener listener = invocation.getArgument(1);
+            listener.started(ROOT + "/b");
+            listener.indexed(ROOT + "/b", 200);
+            listener.started(ROOT + "/c");
+            listener.failed(ROOT + "/c", "Not found");
+            return null;
+        }).when(pageBatchIndexer).index(any(), any());
+
+        // The only worker is busy, so /a waits
+        queue.submit(site, target("/busy"));
+        running.await();
+        PageIndexQueue.JobStatus a = queue.submit(site, target("/a")).orElseThrow();
+        PageIndexQueue.BatchStatus batch = queue.submitBatch(Map.of(site, targets("/a", "/b", "/c"))).orElseThrow();
+        // A variant of /b is the same page
+        PageIndexQueue.JobStatus b = queue.submit(site, target("/b/?utm_source=mail#top")).orElseThrow();
+
+        assertThat(batch.status()).isEqualTo(PageIndexQueue.State.QUEUED);
+        assertThat(batch.pages()).extracting(PageIndexQueue.JobStatus::id).startsWith(a.id()).contains(b.id());
+        release.countDown();
+        PageIndexQueue.BatchStatus done = awaitDone(batch.id());
+
+        verify(pageBatchIndexer).index(eq(Map.of(site, targets("/b", "/c"))), any());
+        assertThat(done.indexed()).isEqualTo(2);
+        assertThat(done.failed()).isEqualTo(1);
+        assertThat(done.pages()).extracting(PageIndexQueue.JobStatus::code).containsExactly(200, 200, null);
+        assertThat(done.pages().get(2).error()).isEqualTo("Not found");
+        assertThat(queue.status(b.id()).orElseThrow().status()).isEqualTo(PageIndexQueue.State.DONE);
+    }
+
+    @Test
+    void pagesOfAFailedBatchAreFailed() throws Exception {
+        doAnswer(invocation -> {
+            throw new IllegalStateException("Executor shut down");
+        }).when(pageBatchIndexer).index(any(), any());
+
+        PageIndexQueue.BatchStatus batch = queue.submitBatch(Map.of(site, targets("/a", "/b"))).orElseThrow();
+        PageIndexQueue.BatchStatus done = awaitDone(batch.id());
+
+        assertThat(done.failed()).isEqualTo(2);
+        // A new request for the URL is queued again
+        assertThat(queue.submit(site, target("/a")).orElseThrow().id()).isNotEqualTo(done.pages().get(0).id());
+    }
+
+    @Test
+    void variantsOfAWaitingUrlShareItsJob() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(pageIndexer.index(any(), any())).thenAnswer(invocation -> {
+            release.await();
+            return 200;
+        });
+        queue.submit(site, target("/busy"));
+
+        PageIndexQueue.JobStatus first = queue.submit(site, target("/a")).orElseThrow();
+        for (String variant : List.of("/a/", "/a#x", "/a?utm_source=mail", "//a")) {
+            assertThat(queue.submit(site, target(variant)).orElseThrow().id()).as(variant).isEqualTo(first.id());
+        }
+        assertThat(queue.submit(site, target("/a?page=2")).orElseThrow().id()).isNotEqualTo(first.id());
+        release.countDown();
+    }
+
+    private PageIndexQueue.BatchStatus awaitDone(String id) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            PageIndexQueue.BatchStatus status = queue.batchStatus(id).orElseThrow();
+            if (status.status() == PageIndexQueue.State.DONE) {
+                return status;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Batch " + id + " did not finish");
+    }
+
+    private static PageTarget target(String path) {
+        return PageTarget.of(CANONICALIZER, ROOT + path);
+    }
+
+    private static List<PageTarget> targets(String... paths) {
+        return Arrays.stream(paths).map(PageIndexQueueTest::target).toList();
+    }
+
+    private static SitesList settings() {
+        SitesList settings = new SitesList();
+        settings.setPageIndexThreads(1);
+        settings.setPageIndexQueueCapacity(10);
+        settings.setPageIndexHistory(100);
+        return settings;
+    }
+}
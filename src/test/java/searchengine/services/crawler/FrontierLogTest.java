@@ -0,0 +1,95 @@
+package searchengine.services.crawler;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FrontierLogTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysFinishedAndPendingUrls() {
+        Path file = directory.resolve("site.log");
+        try (FrontierLog log = FrontierLog.create(file, 1000)) {
+            log.accepted("https://a.ru/", 0);
+            log.accepted("https://a.ru/x", 1);
+            log.accepted("https://a.ru/y", 1);
+            log.completed("https://a.ru/");
+            log.completed("https://a.ru/unknown");
+        }
+
+        FrontierLog.State state = FrontierLog.read(file);
+
+        assertThat(state.finished()).containsExactly("https://a.ru/");
+        assertThat(state.pending()).containsExactly(
+                new FrontierEntry("https://a.ru/x", 1), new FrontierEntry("https://a.ru/y", 1));
+    }
+
+    @Test
+    void replaysTheSameStateAcrossCheckpoints() throws IOException {
+        Path file = directory.resolve("site.log");
+        try (FrontierLog log = FrontierLog.create(file, 4)) {
+            for (int i = 0; i < 50; i++) {
+                log.accepted("https://a.ru/" + i, i % 3);
+                if (i % 2 == 0) {
+                    log.completed("https://a.ru/" + i);
+                }
+            }
+        }
+
+        FrontierLog.State state = FrontierLog.read(file);
+
+        assertThat(state.finished()).hasSize(25).allMatch(url -> Integer.parseInt(url.substring(13)) % 2 == 0);
+        assertThat(state.pending()).hasSize(25)
+                .allMatch(entry -> Integer.parseInt(entry.url().substring(13)) % 2 == 1)
+                .allMatch(entry -> entry.depth() == Integer.parseInt(entry.url().substring(13)) % 3);
+        // Compacted: one record per URL rather than the 75 appended
+        assertThat(Files.readAllLines(file)).hasSizeLessThan(75);
+        assertThat(Files.readAllLines(file)).anyMatch(line -> line.startsWith("V\t"));
+    }
+
+    @Test
+    void resumedLogContinuesAfterACheckpoint() {
+        Path file = directory.resolve("site.log");
+        try (FrontierLog log = FrontierLog.create(file, 2)) {
+            log.accepted("https://a.ru/", 0);
+            log.accepted("https://a.ru/a", 1);
+            log.completed("https://a.ru/");
+        }
+
+        FrontierLog.State first = FrontierLog.read(file);
+        try (FrontierLog log = FrontierLog.append(file, 2)) {
+            log.completed("https://a.ru/a");
+            log.accepted("https://a.ru/b", 2);
+        }
+        FrontierLog.State second = FrontierLog.read(file);
+
+        assertThat(first.finished()).containsExactly("https://a.ru/");
+        assertThat(first.pending()).containsExactly(new FrontierEntry("https://a.ru/a", 1));
+        assertThat(second.finished()).containsExactlyInAnyOrder("https://a.ru/", "https://a.ru/a");
+        assertThat(second.pending()).containsExactly(new FrontierEntry("https://a.ru/b", 2));
+    }
+
+    @Test
+    void ignoresALineCutOffByACrash() throws IOException {
+        Path file = directory.resolve("site.log");
+        try (FrontierLog log = FrontierLog.create(file, 1000)) {
+            log.accepted("https://a.ru/", 0);
+        }
+        Files.writeString(file, "A\t1", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        FrontierLog.State state = FrontierLog.read(file);
+
+        assertThat(state.pending()).containsExactly(new FrontierEntry("https://a.ru/", 0));
+        assertThat(state.finished()).isEqualTo(List.of());
+    }
+}
@@ -0,0 +1,81 @@
+package searchengine.services.crawler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import searchengine.config.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HostSchedulerTest {
+    private static final String HOST = "example.com";
+
+    private final HostScheduler scheduler = new HostScheduler(config(0, 1));
+
+    @AfterEach
+    void shutdown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void longQueueOfRejectedTasksDrainsWithoutRecursion() {
+        List<HostScheduler.Slot> held = new ArrayList<>();
+        scheduler.submit(HOST, this, held::add);
+        AtomicInteger rejected = new AtomicInteger();
+        for (int i = 0; i < 100_000; i++) {
+            // What a task does when its executor has shut down
+            scheduler.submit(HOST, this, slot -> {
+                rejected.incrementAndGet();
+                slot.cancel();
+            });
+        }
+        assertThat(rejected).hasValue(0);
+
+        held.get(0).cancel();
+
+        assertThat(rejected).hasValue(100_000);
+    }
+
+    @Test
+    void failingTaskReleasesItsSlot() {
+        AtomicInteger ran = new AtomicInteger();
+        scheduler.submit(HOST, this, slot -> {
+            throw new IllegalStateException("rejected");
+        });
+        scheduler.submit(HOST, this, slot -> {
+            ran.incrementAndGet();
+            slot.cancel();
+        });
+
+        assertThat(ran).hasValue(1);
+    }
+
+    @Test
+    void connectionLimitHoldsTasksBack() {
+        List<HostScheduler.Slot> held = new ArrayList<>();
+        HostScheduler twoConnections = new HostScheduler(config(0, 2));
+        try {
+            for (int i = 0; i < 5; i++) {
+                twoConnections.submit(HOST, this, held::add);
+            }
+            assertThat(held).hasSize(2);
+
+            held.get(0).done(200, 10, null);
+            assertThat(held).hasSize(3);
+        } finally {
+            twoConnections.shutdown();
+        }
+    }
+
+    private static Config config(int delay, int connections) {
+        Config config = new Config();
+        config.setDelay(delay);
+        config.setMinDelay(0);
+        config.setMaxDelay(1000);
+        config.setMaxConnectionsPerHost(connections);
+        return config;
+    }
+}
@@ -0,0 +1,79 @@
+package searchengine.services.crawler;
+
+import org.junit.jupiter.api.Test;
+import searchengine.config.UrlRules;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UrlCanonicalizerTest {
+    private final UrlCanonicalizer canonicalizer = new UrlCanonicalizer("https://www.site.ru/", rules(true));
+
+    @Test
+    void mapsVariantsOfTheSiteToOneUrl() {
+        assertThat(canonicalizer.canonicalize("http://site.ru/a")).isEqualTo("https://www.site.ru/a");
+        assertThat(canonicalizer.canonicalize("https://WWW.Site.RU:443/a#top")).isEqualTo("https://www.site.ru/a");
+        assertThat(canonicalizer.canonicalize("https://user@www.site.ru/a")).isEqualTo("https://www.site.ru/a");
+        assertThat(canonicalizer.canonicalize("https://www.site.ru//a///b")).isEqualTo("https://www.site.ru/a/b");
+        assertThat(canonicalizer.canonicalize("https://www.site.ru")).isEqualTo("https://www.site.ru/");
+    }
+
+    @Test
+    void dropsIgnoredParametersAndSortsTheRest() {
+        assertThat(canonicalizer.canonicalize("https://www.site.ru/a?utm_source=x&b=2&a=1&fbclid=y"))
+                .isEqualTo("https://www.site.ru/a?a=1&b=2");
+        assertThat(canonicalizer.canonicalize("https://www.site.ru/a?utm_medium=z")).isEqualTo("https://www.site.ru/a");
+    }
+
+    @Test
+    void rejectsLinksOffTheSiteOrExcluded() {
+        assertThat(canonicalizer.canonicalize("https://other.ru/a")).isNull();
+        assertThat(canonicalizer.canonicalize("https://www.site.ru:8080/a")).isNull();
+        assertThat(canonicalizer.canonicalize("mailto:me@site.ru")).isNull();
+        assertThat(canonicalizer.canonicalize("https://www.site.ru/file.PDF")).isNull();
+        assertThat(canonicalizer.canonicalize("https://www.site.ru/news/feed/")).isNull();
+    }
+
+    @Test
+    void rejectsQueriesWhenNotAllowed() {
+        UrlCanonicalizer strict = new UrlCanonicalizer("https://www.site.ru/", rules(false));
+
+        assertThat(strict.canonicalize("https://www.site.ru/a?page=2")).isNull();
+        assertThat(strict.canonicalize("https://www.site.ru/a?utm_source=x")).isEqualTo("https://www.site.ru/a");
+    }
+
+    @Test
+    void defaultsKeepQueriesExceptEmptyTrailingParameters() {
+        UrlCanonicalizer defaults = new UrlCanonicalizer("https://www.site.ru/", UrlRules.defaults().merge(null));
+
+        assertThat(defaults.canonicalize("https://www.site.ru/news?page=2")).isEqualTo("https://www.site.ru/news?page=2");
+        assertThat(defaults.canonicalize("https://www.site.ru/search?q=")).isNull();
+        assertThat(defaults.canonicalize("https://www.site.ru/search?q=&utm_source=")).isNull();
+        assertThat(defaults.canonicalize("https://www.site.ru/search?q=a#=")).isEqualTo("https://www.site.ru/search?q=a");
+    }
+
+    @Test
+    void keepsToTheRootPath() {
+        UrlCanonicalizer section = new UrlCanonicalizer("https://site.ru/blog/", rules(true));
+
+        assertThat(section.canonicalize("https://site.ru/blog")).isEqualTo("https://site.ru/blog");
+        assertThat(section.canonicalize("https://site.ru/blog/post")).isEqualTo("https://site.ru/blog/post");
+        assertThat(section.canonicalize("https://site.ru/blogger")).isNull();
+        assertThat(section.canonicalize("https://site.ru/")).isNull();
+    }
+
+    @Test
+    void keyJoinsTrailingSlashVariants() {
+        assertThat(canonicalizer.key("https://www.site.ru/a/")).isEqualTo("https://www.site.ru/a");
+        assertThat(canonicalizer.key("https://www.site.ru/a/?b=1")).isEqualTo("https://www.site.ru/a?b=1");
+        assertThat(canonicalizer.key("https://www.site.ru/")).isEqualTo("https://www.site.ru/");
+        assertThat(canonicalizer.requestPath("https://www.site.ru/a?b=1")).isEqualTo("/a?b=1");
+        assertThat(canonicalizer.path("https://www.site.ru/a?b=1")).isEqualTo("/a?b=1");
+        assertThat(canonicalizer.path("https://www.site.ru/")).isEqualTo("/");
+    }
+
+    private static UrlRules rules(boolean allowQuery) {
+        UrlRules site = new UrlRules();
+        site.setAllowQuery(allowQuery);
+        return UrlRules.defaults().merge(site);
+    }
+}
@@ -0,0 +1,68 @@
+package searchengine.services.crawler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VisitedSetTest {
+    @Test
+    void claimsEachUrlOnce() {
+        VisitedSet visited = new VisitedSet();
+
+        assertThat(visited.claim("https://a.ru/x")).isTrue();
+        assertThat(visited.claim("https://a.ru/x")).isFalse();
+        assertThat(visited.contains("https://a.ru/x")).isTrue();
+        assertThat(visited.contains("https://a.ru/y")).isFalse();
+        assertThat(visited.size()).isEqualTo(1);
+    }
+
+    @Test
+    void growsWithoutLosingUrls() {
+        VisitedSet visited = new VisitedSet();
+        for (int i = 0; i < 200_000; i++) {
+            assertThat(visited.claim("https://a.ru/page/" + i)).isTrue();
+        }
+
+        assertThat(visited.size()).isEqualTo(200_000);
+        for (int i = 0; i < 200_000; i += 997) {
+            assertThat(visited.contains("https://a.ru/page/" + i)).isTrue();
+        }
+        assertThat(visited.contains("https://a.ru/page/200000")).isFalse();
+    }
+
+    @Test
+    void concurrentClaimsHaveOneWinnerPerUrl() throws InterruptedException {
+        VisitedSet visited = new VisitedSet();
+        AtomicInteger won = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 20_000; i++) {
+                    if (visited.claim("https://a.ru/" + i)) {
+                        won.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(won).hasValue(20_000);
+        assertThat(visited.size()).isEqualTo(20_000);
+    }
+}
@@ -0,0 +1,116 @@
+package searchengine.services.index;
+
+import org.junit.jupiter.api.Test;
+import searchengine.config.SearchSettings;
+import searchengine.repository.IndexRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class InvertedIndexTest {
+    private static final int SITE = 1;
+    // A lemma only page 2 contains
+    private static final int OWN = 60_000;
+
+    private final IndexRepository repository = mock(IndexRepository.class);
+    private final InvertedIndex index = new InvertedIndex(repository, new SearchSettings());
+
+    @Test
+    void pageRewrittenWhileLoadingIsCountedOnce() {
+        // The first chunk is full, so the loader asks for a second one. Page 2 starts at its end.
+        List<Object[]> first = new ArrayList<>();
+        int id = 0;
+        for (int lemma = 1; first.size() < 49_999; lemma++) {
+            first.add(row(++id, 1, lemma, 1));
+        }
+        first.add(row(++id, 2, 1, 3));
+        // A writer replaced page 2 before the loader got to the rest of it
+        List<Object[]> second = List.of(row(100_001, 2, 1, 5), row(100_002, 2, OWN, 2));
+        when(repository.findRowsAfter(anyInt(), any()))
+                .thenReturn(first)
+                .thenAnswer(invocation -> {
+                    index.addPage(SITE, 2, new int[]{1, OWN}, new float[]{5, 2});
+                    return second;
+                });
+
+        index.loadFromDatabase();
+
+        assertThat(index.isReady()).isTrue();
+        CorpusStatistics statistics = index.statistics(SITE, Set.of(1, OWN));
+        assertThat(statistics.pages()).isEqualTo(2);
+        assertThat(statistics.tokens()).isEqualTo(49_999 + 7);
+        assertThat(statistics.documentFrequencies()).containsEntry(1, 2L).containsEntry(OWN, 1L);
+
+        index.removePage(2);
+        statistics = index.statistics(SITE, Set.of(1, OWN));
+        assertThat(statistics.pages()).isEqualTo(1);
+        assertThat(statistics.tokens()).isEqualTo(49_999);
+        assertThat(statistics.documentFrequencies()).containsEntry(1, 1L).doesNotContainKey(OWN);
+    }
+
+    @Test
+    void pageRemovedWhileLoadingIsNotRevived() {
+        when(repository.findRowsAfter(anyInt(), any()))
+                .thenAnswer(invocation -> {
+                    // Deleted after the chunk was read, before it was applied
+                    index.removePage(2);
+                    return List.of(row(1, 1, 1, 2), row(2, 2, 1, 4));
+                });
+
+        index.loadFromDatabase();
+
+        CorpusStatistics statistics = index.statistics(SITE, Set.of(1));
+        assertThat(statistics.pages()).isEqualTo(1);
+        assertThat(statistics.tokens()).isEqualTo(2);
+    }
+
+    @Test
+    void reloadMatchesTheIndexWritersBuilt() {
+        // Pages 1 and 3 stay, page 2 is rewritten and page 4 removed, as writers would leave them
+        index.addPage(SITE, 1, new int[]{1, 2}, new float[]{3, 1});
+        index.addPage(SITE, 2, new int[]{1}, new float[]{9});
+        index.addPage(SITE, 3, new int[]{2, 3}, new float[]{2, 2});
+        index.addPage(SITE, 4, new int[]{3}, new float[]{5});
+        index.addPage(SITE, 2, new int[]{2, 3}, new float[]{4, 1});
+        index.removePage(4);
+        List<Object[]> rows = List.of(row(1, 1, 1, 3), row(2, 1, 2, 1), row(5, 3, 2, 2), row(6, 3, 3, 2),
+                row(8, 2, 2, 4), row(9, 2, 3, 1));
+        when(repository.findRowsAfter(anyInt(), any())).thenReturn(rows);
+        when(repository.siteTotals()).thenReturn(List.<Object[]>of(new Object[]{SITE, 3L, 13.0}));
+        InvertedIndex reloaded = new InvertedIndex(repository, new SearchSettings());
+
+        reloaded.loadFromDatabase();
+
+        Set<Integer> lemmas = Set.of(1, 2, 3);
+        assertThat(reloaded.statistics(SITE, lemmas)).isEqualTo(index.statistics(SITE, lemmas));
+        assertThat(reloaded.verifyTotals()).isTrue();
+        assertThat(index.verifyTotals()).isTrue();
+    }
+
+    @Test
+    void verifyReportsTotalsThatDiffer() {
+        index.addPage(SITE, 1, new int[]{1, 2}, new float[]{3, 1});
+        index.addPage(2, 2, new int[]{1}, new float[]{2});
+
+        when(repository.siteTotals()).thenReturn(List.<Object[]>of(new Object[]{SITE, 1L, 5.0}));
+        assertThat(index.verifyTotals()).isFalse();
+
+        // Site 2 is missing from the database
+        when(repository.siteTotals()).thenReturn(List.<Object[]>of(new Object[]{SITE, 1L, 4.0}));
+        assertThat(index.verifyTotals()).isFalse();
+
+        when(repository.siteTotals()).thenReturn(List.of(new Object[]{SITE, 1L, 4.0}, new Object[]{2, 1L, 2.0}));
+        assertThat(index.verifyTotals()).isTrue();
+    }
+
+    private static Object[] row(int id, int pageId, int lemmaId, float rank) {
+        return new Object[]{id, pageId, SITE, lemmaId, rank};
+    }
+}
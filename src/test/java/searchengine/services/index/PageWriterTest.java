@@ -0,0 +1,127 @@
+package searchengine.services.index;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.SearchSettings;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.repository.IndexRepository;
+import searchengine.repository.PageRepository;
+import searchengine.repository.SiteLemmaRepository;
+import searchengine.utils.lemmatization.LemmaCounts;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PageWriterTest {
+    private static final int SITE_ID = 1;
+    private static final int PAGE_ID = 7;
+    private static final int LEMMA_ID = 3;
+
+    private final PageRepository pageRepository = mock(PageRepository.class);
+    private final LemmaDictionary lemmaDictionary = mock(LemmaDictionary.class);
+    private final IndexBatchWriter indexBatchWriter = mock(IndexBatchWriter.class);
+    private final InvertedIndex invertedIndex = new InvertedIndex(mock(IndexRepository.class), new SearchSettings());
+    private final SearchResultCache cache = new SearchResultCache(new SearchSettings(), new SimpleMeterRegistry());
+    private final PageWriter writer = new PageWriter(pageRepository, mock(SiteLemmaRepository.class),
+            mock(IndexRepository.class), invertedIndex, mock(PageContentStore.class), cache, lemmaDictionary,
+            indexBatchWriter, mock(JdbcTemplate.class), new TransactionTemplate(new CommitOrRollback()));
+    private final Site site = new Site();
+
+    PageWriterTest() {
+        site.setId(SITE_ID);
+        Page existing = new Page();
+        existing.setId(PAGE_ID);
+        existing.setSite(site);
+        existing.setPath("/");
+        when(pageRepository.findByPathAndSite("/", site)).thenReturn(Optional.of(existing));
+        when(pageRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(lemmaDictionary.intern(any())).thenReturn(Map.of("слово", LEMMA_ID));
+        // The page as the previous crawl stored it
+        invertedIndex.addPage(SITE_ID, PAGE_ID, new int[]{LEMMA_ID}, new float[]{2});
+    }
+
+    @Test
+    void rewrittenPageReachesMemoryAfterCommit() {
+        writer.write(List.of(page(5)));
+
+        CorpusStatistics statistics = invertedIndex.statistics(SITE_ID, Set.of(LEMMA_ID));
+        assertThat(statistics.pages()).isEqualTo(1);
+        assertThat(statistics.tokens()).isEqualTo(5);
+    }
+
+    @Test
+    void rollbackLeavesMemoryAndCacheAlone() {
+        long generation = cache.generation(SITE_ID);
+        doThrow(new IllegalStateException("insert failed")).when(indexBatchWriter).insert(anyList());
+
+        assertThatThrownBy(() -> writer.write(List.of(page(5)))).hasMessage("insert failed");
+
+        CorpusStatistics statistics = invertedIndex.statistics(SITE_ID, Set.of(LEMMA_ID));
+        assertThat(statistics.pages()).isEqualTo(1);
+        assertThat(statistics.tokens()).isEqualTo(2);
+        assertThat(cache.generation(SITE_ID)).isEqualTo(generation);
+    }
+
+    @Test
+    void clearedSiteLeavesMemoryAfterCommit() {
+        when(pageRepository.findIdsBySite(site)).thenReturn(List.of(PAGE_ID));
+
+        writer.clearSite(site);
+
+        assertThat(invertedIndex.statistics(SITE_ID, Set.of(LEMMA_ID)).pages()).isZero();
+    }
+
+    @Test
+    void failedClearKeepsTheSiteSearchable() {
+        when(pageRepository.findIdsBySite(site)).thenReturn(List.of(PAGE_ID));
+        doThrow(new IllegalStateException("delete failed")).when(pageRepository).deleteBySite(site);
+
+        assertThatThrownBy(() -> writer.clearSite(site)).hasMessage("delete failed");
+
+        assertThat(invertedIndex.statistics(SITE_ID, Set.of(LEMMA_ID)).pages()).isEqualTo(1);
+    }
+
+    private ParsedPage page(int count) {
+        return new ParsedPage(site, "/", 200, "<html></html>",
+                new LemmaCounts(new String[]{"слово"}, new int[]{count}),
+                null, null, "hash", "title", new byte[0], null);
+    }
+
+    /**
+     * Runs transaction synchronizations the way a real manager does, without a database.
+     */
+    private static class CommitOrRollback extends AbstractPlatformTransactionManager {
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package searchengine.services.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PostingListTest {
+    @Test
+    void advanceOnEmptyListReturnsSize() {
+        PostingList list = new PostingList();
+
+        assertThat(list.advance(0, 5)).isZero();
+    }
+
+    @Test
+    void advanceHandlesEdges() {
+        PostingList list = listOf(3, 5, 8, 13, 21, 34, 55, 89);
+
+        assertThat(list.advance(0, 1)).as("before the first page").isZero();
+        assertThat(list.advance(0, 3)).as("on the first page").isZero();
+        assertThat(list.advance(0, 89)).as("on the last page").isEqualTo(7);
+        assertThat(list.advance(0, 90)).as("past the last page").isEqualTo(8);
+        assertThat(list.advance(8, 1)).as("from the end").isEqualTo(8);
+        assertThat(list.advance(4, 5)).as("target behind the position").isEqualTo(4);
+        assertThat(list.advance(1, 6)).as("between pages").isEqualTo(2);
+        assertThat(list.advance(1, 34)).as("a galloping step lands on it").isEqualTo(5);
+    }
+
+    @Test
+    void advanceMatchesLinearScan() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            TreeSet<Integer> pages = new TreeSet<>();
+            int count = random.nextInt(300);
+            while (pages.size() < count) {
+                pages.add(1 + random.nextInt(1000));
+            }
+            PostingList list = new PostingList();
+            pages.forEach(page -> list.put(page, 1));
+            int[] ids = pages.stream().mapToInt(Integer::intValue).toArray();
+
+            for (int from = 0; from <= ids.length; from++) {
+                int target = random.nextInt(1002);
+                int expected = from;
+                while (expected < ids.length && ids[expected] < target) {
+                    expected++;
+                }
+                assertThat(list.advance(from, target)).as("from %d to %d", from, target).isEqualTo(expected);
+            }
+        }
+    }
+
+    @Test
+    void putKeepsPagesSortedAndRemoveDropsThem() {
+        PostingList list = new PostingList();
+        list.put(10, 1);
+        list.put(2, 4);
+        list.put(7, 2);
+        list.put(7, 3);
+
+        assertThat(list.size()).isEqualTo(3);
+        assertThat(new int[]{list.pageAt(0), list.pageAt(1), list.pageAt(2)}).containsExactly(2, 7, 10);
+        assertThat(list.rankAt(1)).isEqualTo(3);
+        assertThat(list.maxRank()).isEqualTo(4);
+
+        assertThat(list.remove(7)).isTrue();
+        assertThat(list.remove(7)).isFalse();
+        assertThat(list.advance(0, 3)).isEqualTo(1);
+        assertThat(list.pageAt(1)).isEqualTo(10);
+    }
+
+    private static PostingList listOf(int... pageIds) {
+        PostingList list = new PostingList();
+        for (int pageId : pageIds) {
+            list.put(pageId, 1);
+        }
+        return list;
+    }
+}
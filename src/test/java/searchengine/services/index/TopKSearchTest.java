@@ -0,0 +1,194 @@
+package searchengine.services.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Compares the pruned evaluation with scoring every page of random corpora.
+ */
+class TopKSearchTest {
+    private static final int PAGES = 400;
+    private static final double EPSILON = 1e-9;
+
+    @Test
+    void conjunctiveMatchesExhaustiveScoring() {
+        Random random = new Random(7);
+        for (int round = 0; round < 300; round++) {
+            Corpus corpus = Corpus.random(random, 1 + random.nextInt(3), random.nextInt(3));
+            int k = 1 + random.nextInt(20);
+
+            ScoredPages found = TopKSearch.conjunctive(corpus.cursors(corpus.required), corpus.cursors(corpus.optional), k);
+
+            List<Scored> expected = corpus.exhaustive(corpus.required.length);
+            assertTop(found, expected, k, corpus);
+            assertThat(found.total()).as("round %d", round).isEqualTo(expected.size());
+        }
+    }
+
+    @Test
+    void disjunctiveMatchesExhaustiveScoring() {
+        Random random = new Random(11);
+        for (int round = 0; round < 300; round++) {
+            Corpus corpus = Corpus.random(random, 2 + random.nextInt(4), random.nextInt(3));
+            int minMatch = 1 + random.nextInt(corpus.required.length - 1);
+            int k = 1 + random.nextInt(20);
+
+            ScoredPages found = TopKSearch.disjunctive(corpus.cursors(corpus.required), corpus.cursors(corpus.optional),
+                    minMatch, k);
+
+            List<Scored> expected = corpus.exhaustive(minMatch);
+            assertTop(found, expected, k, corpus);
+            // Counted apart from the pruned scoring, so exact for every k
+            assertThat(found.total()).as("round %d", round).isEqualTo(expected.size());
+        }
+    }
+
+    @Test
+    void disjunctiveTotalIsExactWhenNothingIsPruned() {
+        Random random = new Random(13);
+        Corpus corpus = Corpus.random(random, 3, 1);
+
+        ScoredPages found = TopKSearch.disjunctive(corpus.cursors(corpus.required), corpus.cursors(corpus.optional),
+                1, PAGES);
+
+        assertThat(found.total()).isEqualTo(corpus.exhaustive(1).size());
+    }
+
+    @Test
+    void topPagesOrdersByScoreThenPageId() {
+        TopPages top = new TopPages(3);
+        top.offer(9, 1.0);
+        top.offer(4, 2.0);
+        top.offer(6, 2.0);
+        top.offer(2, 0.5);
+        top.offer(1, 2.0);
+
+        ScoredPages pages = top.toScoredPages(5);
+
+        assertThat(pages.pageIds()).containsExactly(1, 4, 6);
+        assertThat(pages.scores()).containsExactly(2.0, 2.0, 2.0);
+    }
+
+    /**
+     * Scores may tie, so the pages are checked by score: the returned scores are the k best
+     * and each is the page's true score.
+     */
+    private static void assertTop(ScoredPages found, List<Scored> expected, int k, Corpus corpus) {
+        assertThat(found.size()).isEqualTo(Math.min(k, expected.size()));
+        for (int i = 0; i < found.size(); i++) {
+            assertThat(found.scores()[i]).isCloseTo(expected.get(i).score(), within(EPSILON));
+            assertThat(found.scores()[i]).isCloseTo(corpus.score(found.pageIds()[i]), within(EPSILON));
+        }
+    }
+
+    private record Scored(int pageId, double score) {
+    }
+
+    private static final class Corpus {
+        private final PostingList[] required;
+        private final PostingList[] optional;
+        private final int[] pageLengths = new int[PAGES + 1];
+        private final Bm25 bm25;
+        private final double[] requiredIdfs;
+        private final double[] optionalIdfs;
+
+        private Corpus(PostingList[] required, PostingList[] optional) {
+            this.required = required;
+            this.optional = optional;
+            long tokens = 0;
+            for (int page = 1; page <= PAGES; page++) {
+                pageLengths[page] = 20 + (page * 37) % 300;
+                tokens += pageLengths[page];
+            }
+            bm25 = new Bm25(pageLengths, (double) tokens / PAGES);
+            requiredIdfs = idfs(required);
+            optionalIdfs = idfs(optional);
+        }
+
+        static Corpus random(Random random, int requiredTerms, int optionalTerms) {
+            return new Corpus(lists(random, requiredTerms), lists(random, optionalTerms));
+        }
+
+        private static PostingList[] lists(Random random, int count) {
+            PostingList[] lists = new PostingList[count];
+            for (int i = 0; i < count; i++) {
+                lists[i] = new PostingList();
+                // Dense and sparse terms, so both pruning and intersection have work to do
+                double density = 0.05 + random.nextDouble() * 0.6;
+                for (int page = 1; page <= PAGES; page++) {
+                    if (random.nextDouble() < density) {
+                        lists[i].put(page, 1 + random.nextInt(random.nextInt(10) + 1));
+                    }
+                }
+                if (lists[i].size() == 0) {
+                    lists[i].put(1 + random.nextInt(PAGES), 1);
+                }
+            }
+            return lists;
+        }
+
+        private double[] idfs(PostingList[] lists) {
+            double[] idfs = new double[lists.length];
+            for (int i = 0; i < lists.length; i++) {
+                idfs[i] = Bm25.idf(PAGES, lists[i].size());
+            }
+            return idfs;
+        }
+
+        TermCursor[] cursors(PostingList[] lists) {
+            double[] idfs = lists == required ? requiredIdfs : optionalIdfs;
+            TermCursor[] cursors = new TermCursor[lists.length];
+            for (int i = 0; i < lists.length; i++) {
+                cursors[i] = new TermCursor(lists[i], idfs[i], bm25);
+            }
+            return cursors;
+        }
+
+        double score(int page) {
+            return score(required, requiredIdfs, page) + score(optional, optionalIdfs, page);
+        }
+
+        /**
+         * Every page with at least {@code minMatch} required terms, best first.
+         */
+        List<Scored> exhaustive(int minMatch) {
+            List<Scored> matching = new ArrayList<>();
+            for (int page = 1; page <= PAGES; page++) {
+                int matches = 0;
+                for (PostingList list : required) {
+                    if (contains(list, page)) {
+                        matches++;
+                    }
+                }
+                if (matches >= minMatch) {
+                    matching.add(new Scored(page, score(page)));
+                }
+            }
+            matching.sort(Comparator.comparingDouble(Scored::score).reversed());
+            return matching;
+        }
+
+        private double score(PostingList[] lists, double[] idfs, int page) {
+            double score = 0;
+            for (int i = 0; i < lists.length; i++) {
+                int position = lists[i].advance(0, page);
+                if (position < lists[i].size() && lists[i].pageAt(position) == page) {
+                    score += bm25.score(idfs[i], lists[i].rankAt(position), page);
+                }
+            }
+            return score;
+        }
+
+        private static boolean contains(PostingList list, int page) {
+            int position = list.advance(0, page);
+            return position < list.size() && list.pageAt(position) == page;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package searchengine.utils.lemmatization;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LemmaTableTest {
+    @Test
+    void givesDenseIdsInInsertionOrder() {
+        LemmaTable table = new LemmaTable(4);
+
+        assertThat(table.id("дом")).isZero();
+        assertThat(table.id("сад")).isEqualTo(1);
+        assertThat(table.id("дом")).isZero();
+        assertThat(table.size()).isEqualTo(2);
+        assertThat(table.lemma(1)).isEqualTo("сад");
+    }
+
+    @Test
+    void bufferAndStringLookupsAgree() {
+        LemmaTable table = new LemmaTable(4);
+        char[] buffer = "лесной массив".toCharArray();
+
+        int fromBuffer = table.id(buffer, 6);
+
+        assertThat(table.lemma(fromBuffer)).isEqualTo("лесной");
+        assertThat(table.id("лесной")).isEqualTo(fromBuffer);
+        assertThat(table.id(buffer, buffer.length)).isNotEqualTo(fromBuffer);
+    }
+
+    @Test
+    void keepsEveryLemmaWhileGrowing() {
+        LemmaTable table = new LemmaTable(2);
+        for (int i = 0; i < 100_000; i++) {
+            assertThat(table.id("лемма" + i)).isEqualTo(i);
+        }
+
+        assertThat(table.size()).isEqualTo(100_000);
+        for (int i = 0; i < 100_000; i += 251) {
+            char[] buffer = ("лемма" + i).toCharArray();
+            assertThat(table.id(buffer, buffer.length)).isEqualTo(i);
+            assertThat(table.lemma(i)).isEqualTo("лемма" + i);
+        }
+    }
+}